@@ -0,0 +1,142 @@
+package com.securefile.benchmark;
+
+import com.securefile.metrics.TransferMetrics;
+import com.securefile.model.File;
+import com.securefile.model.FileBlob;
+import com.securefile.model.User;
+import com.securefile.repository.FileBlobRepository;
+import com.securefile.repository.FileRepository;
+import com.securefile.service.BlobService;
+import com.securefile.service.CompressionService;
+import com.securefile.service.EncryptionService;
+import com.securefile.service.FileService;
+import com.securefile.service.RenditionStore;
+import com.securefile.storage.BlockCache;
+import com.securefile.storage.LocalStorageBackend;
+import com.securefile.storage.StorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wires services for benchmarks without a Spring context or database. Repositories are
+ * in-memory stand-ins that implement only the methods the services call.
+ */
+final class BenchmarkSupport {
+
+    static final String ENCRYPTION_KEY = "12345678901234567890123456789012";
+
+    private BenchmarkSupport() {
+    }
+
+    static EncryptionService encryptionService() {
+        EncryptionService service = new EncryptionService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "encryptionKey", ENCRYPTION_KEY);
+        service.init();
+        return service;
+    }
+
+    static FileService fileService(EncryptionService encryptionService, Path uploadDir) throws IOException {
+        CompressionService compressionService = new CompressionService();
+        ReflectionTestUtils.setField(compressionService, "enabled", true);
+        ReflectionTestUtils.setField(compressionService, "level", 6);
+
+        StorageBackend storageBackend = new LocalStorageBackend(uploadDir.toString());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+        RenditionStore renditionStore = new RenditionStore(encryptionService);
+        ReflectionTestUtils.setField(renditionStore, "cacheDir", uploadDir.resolve("previews").toString());
+        ReflectionTestUtils.setField(renditionStore, "maxBytes", 0L);
+        renditionStore.init();
+        // Disabled, so the benchmarks keep measuring the backend and the cipher
+        BlockCache blockCache = new BlockCache(storageBackend, 0, 256 * 1024, 16);
+        BlobService blobService = new BlobService(fileBlobRepository(), transactionTemplate, storageBackend,
+                renditionStore, blockCache);
+        FileService fileService = new FileService(fileRepository(), encryptionService, blobService, compressionService,
+                storageBackend, blockCache, event -> { },
+                new TransferMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(fileService, "batchConcurrency", 8);
+        fileService.init();
+        return fileService;
+    }
+
+    static User user() {
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("benchmark");
+        return user;
+    }
+
+    private static FileRepository fileRepository() {
+        Map<Long, File> rows = new ConcurrentHashMap<>();
+        AtomicLong ids = new AtomicLong();
+        return (FileRepository) Proxy.newProxyInstance(FileRepository.class.getClassLoader(),
+                new Class<?>[]{FileRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> {
+                        File file = (File) args[0];
+                        if (file.getId() == null) {
+                            file.setId(ids.incrementAndGet());
+                        }
+                        rows.put(file.getId(), file);
+                        yield file;
+                    }
+                    case "findById" -> Optional.ofNullable(rows.get((Long) args[0]));
+                    case "delete" -> rows.remove(((File) args[0]).getId());
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static FileBlobRepository fileBlobRepository() {
+        Map<String, FileBlob> blobs = new ConcurrentHashMap<>();
+        AtomicLong ids = new AtomicLong();
+        return (FileBlobRepository) Proxy.newProxyInstance(FileBlobRepository.class.getClassLoader(),
+                new Class<?>[]{FileBlobRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "saveAndFlush" -> {
+                        FileBlob blob = (FileBlob) args[0];
+                        blob.setId(ids.incrementAndGet());
+                        blobs.put(blob.getContentHash(), blob);
+                        yield blob;
+                    }
+                    case "findByContentHash" -> Optional.ofNullable(blobs.get((String) args[0]));
+                    case "incrementReferences" -> {
+                        FileBlob blob = blobs.get((String) args[0]);
+                        if (blob == null || blob.getReferenceCount() == 0) {
+                            yield 0;
+                        }
+                        blob.setReferenceCount(blob.getReferenceCount() + 1);
+                        yield 1;
+                    }
+                    case "findByIdForUpdate" -> blobs.values().stream()
+                            .filter(blob -> blob.getId().equals(args[0]))
+                            .findFirst();
+                    case "delete" -> blobs.remove(((FileBlob) args[0]).getContentHash());
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
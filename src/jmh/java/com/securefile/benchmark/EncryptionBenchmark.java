@@ -0,0 +1,136 @@
+package com.securefile.benchmark;
+
+import com.securefile.service.EncryptionService;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the pooled GCM engine in {@link EncryptionService} with the original per-call
+ * CBC implementation, kept below as {@link LegacyEncryption}. Run with {@code -t 8} or more
+ * threads to see the effect of pooling under contention.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class EncryptionBenchmark {
+
+    static final String KEY = BenchmarkSupport.ENCRYPTION_KEY;
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    public int payloadSize;
+
+    private EncryptionService engine;
+    private LegacyEncryption legacy;
+    private byte[] plaintext;
+    private byte[] engineCiphertext;
+    private byte[] legacyCiphertext;
+    private ByteBuffer directPlaintext;
+    private ByteBuffer directCiphertext;
+    private ByteBuffer directOutput;
+
+    @Setup
+    public void setUp() throws Exception {
+        engine = BenchmarkSupport.encryptionService();
+        legacy = new LegacyEncryption(KEY);
+
+        plaintext = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(plaintext);
+        engineCiphertext = engine.encrypt(plaintext);
+        legacyCiphertext = legacy.encrypt(plaintext);
+
+        directPlaintext = ByteBuffer.allocateDirect(payloadSize);
+        directPlaintext.put(plaintext).flip();
+        directCiphertext = ByteBuffer.allocateDirect((int) engine.encryptedSize(payloadSize));
+        directOutput = ByteBuffer.allocateDirect(payloadSize);
+    }
+
+    @Benchmark
+    public byte[] legacyEncrypt() throws Exception {
+        return legacy.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public byte[] legacyDecrypt() throws Exception {
+        return legacy.decrypt(legacyCiphertext);
+    }
+
+    @Benchmark
+    public byte[] engineEncrypt() throws Exception {
+        return engine.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public byte[] engineDecrypt() throws Exception {
+        return engine.decrypt(engineCiphertext);
+    }
+
+    @Benchmark
+    public int engineEncryptDirectBuffer() throws Exception {
+        directPlaintext.rewind();
+        directCiphertext.clear();
+        return engine.encrypt(directPlaintext, directCiphertext);
+    }
+
+    @Benchmark
+    public int engineDecryptDirectBuffer() throws Exception {
+        directPlaintext.rewind();
+        directCiphertext.clear();
+        engine.encrypt(directPlaintext, directCiphertext);
+        directCiphertext.flip();
+        directOutput.clear();
+        return engine.decrypt(directCiphertext, directOutput);
+    }
+
+    /**
+     * The implementation before the engine rewrite: key derivation, {@code Cipher.getInstance}
+     * and a new {@code SecureRandom} on every call, plus full-payload copies around {@code doFinal}.
+     */
+    static final class LegacyEncryption {
+        private final String encryptionKey;
+
+        LegacyEncryption(String encryptionKey) {
+            this.encryptionKey = encryptionKey;
+        }
+
+        byte[] encrypt(byte[] data) throws Exception {
+            SecretKey key = generateKey();
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            byte[] iv = new byte[16];
+            new SecureRandom().nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+            byte[] encryptedData = cipher.doFinal(data);
+            byte[] combined = new byte[iv.length + encryptedData.length];
+            System.arraycopy(iv, 0, combined, 0, iv.length);
+            System.arraycopy(encryptedData, 0, combined, iv.length, encryptedData.length);
+            return combined;
+        }
+
+        byte[] decrypt(byte[] encryptedData) throws Exception {
+            SecretKey key = generateKey();
+            Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+            byte[] iv = new byte[16];
+            System.arraycopy(encryptedData, 0, iv, 0, iv.length);
+            byte[] data = new byte[encryptedData.length - iv.length];
+            System.arraycopy(encryptedData, iv.length, data, 0, data.length);
+            cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+            return cipher.doFinal(data);
+        }
+
+        private SecretKey generateKey() throws Exception {
+            byte[] keyBytes = encryptionKey.getBytes("UTF-8");
+            byte[] key = new byte[32];
+            System.arraycopy(keyBytes, 0, key, 0, Math.min(keyBytes.length, key.length));
+            return new SecretKeySpec(key, "AES");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.securefile.benchmark;
+
+import com.securefile.model.File;
+import com.securefile.model.User;
+import com.securefile.service.EncryptionService;
+import com.securefile.service.FileService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Upload, download and delete through {@link FileService} against a temporary directory, so the
+ * numbers include hashing, encryption and real disk writes. Every upload carries fresh random
+ * content so deduplication never short-circuits the write.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class FileRoundTripBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    public int payloadSize;
+
+    @Param({"application/octet-stream"})
+    public String contentType;
+
+    private Path uploadDir;
+    private EncryptionService encryptionService;
+    private FileService fileService;
+    private User user;
+
+    @State(Scope.Thread)
+    public static class Payload {
+        MockMultipartFile multipartFile;
+
+        @Setup(Level.Invocation)
+        public void setUp(FileRoundTripBenchmark benchmark) {
+            byte[] content = new byte[benchmark.payloadSize];
+            ThreadLocalRandom.current().nextBytes(content);
+            multipartFile = new MockMultipartFile("file", "payload.bin", benchmark.contentType, content);
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        uploadDir = Files.createTempDirectory("securefile-bench");
+        encryptionService = BenchmarkSupport.encryptionService();
+        fileService = BenchmarkSupport.fileService(encryptionService, uploadDir);
+        user = BenchmarkSupport.user();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        encryptionService.shutdown();
+        try (Stream<Path> paths = Files.walk(uploadDir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public long uploadDownloadDelete(Payload payload) throws Exception {
+        File file = fileService.uploadFile(payload.multipartFile, user);
+        fileService.downloadFile(file, OutputStream.nullOutputStream());
+        fileService.deleteFile(file.getId(), user);
+        return file.getFileSize();
+    }
+}
@@ -0,0 +1,146 @@
+package com.securefile.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjacency-list traversal (one query per folder, as {@code findByUserAndParentFolder} forces)
+ * against the materialized-path queries in {@code FolderRepository}, on an in-memory H2 copy of
+ * the folders/files schema. {@code deep} is a single chain 20 levels deep; {@code wide} is one
+ * folder with 100k direct children. Every folder holds one file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class FolderHierarchyBenchmark {
+
+    private static final long USER_ID = 1;
+
+    @Param({"deep", "wide"})
+    public String shape;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private long rootId;
+    private long leafId;
+    private String rootPath;
+    private String leafPath;
+
+    @Setup
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:folders-" + shape + ";MODE=MySQL", true);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE folders (id BIGINT PRIMARY KEY, name VARCHAR(255), user_id BIGINT NOT NULL, " +
+                "parent_folder_id BIGINT, path VARCHAR(760), depth INT)");
+        jdbc.execute("CREATE INDEX idx_folders_parent ON folders (parent_folder_id)");
+        jdbc.execute("CREATE INDEX idx_folders_user_path ON folders (user_id, path)");
+        jdbc.execute("CREATE TABLE files (id BIGINT AUTO_INCREMENT PRIMARY KEY, folder_id BIGINT, file_size BIGINT)");
+        jdbc.execute("CREATE INDEX idx_files_folder ON files (folder_id)");
+
+        List<Object[]> folders = new ArrayList<>();
+        rootId = 1;
+        rootPath = "/1/";
+        folders.add(new Object[]{1L, "root", USER_ID, null, rootPath, 0});
+        if ("deep".equals(shape)) {
+            String path = rootPath;
+            for (long id = 2; id <= 20; id++) {
+                path = path + id + "/";
+                folders.add(new Object[]{id, "level-" + id, USER_ID, id - 1, path, (int) id - 1});
+            }
+            leafId = 20;
+            leafPath = path;
+        } else {
+            for (long id = 2; id <= 100_001; id++) {
+                folders.add(new Object[]{id, "child-" + id, USER_ID, rootId, rootPath + id + "/", 1});
+            }
+            leafId = 100_001;
+            leafPath = rootPath + leafId + "/";
+        }
+        jdbc.batchUpdate("INSERT INTO folders (id, name, user_id, parent_folder_id, path, depth) VALUES (?, ?, ?, ?, ?, ?)", folders);
+        List<Object[]> files = new ArrayList<>();
+        for (Object[] folder : folders) {
+            files.add(new Object[]{folder[0], 1024L});
+        }
+        jdbc.batchUpdate("INSERT INTO files (folder_id, file_size) VALUES (?, ?)", files);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public int descendantsAdjacency() {
+        return collectDescendants(rootId).size();
+    }
+
+    @Benchmark
+    public int descendantsPath() {
+        return jdbc.queryForList("SELECT id, name FROM folders WHERE user_id = ? AND path LIKE CONCAT(?, '%') AND path <> ?",
+                USER_ID, rootPath, rootPath).size();
+    }
+
+    @Benchmark
+    public int ancestorsAdjacency() {
+        int count = 0;
+        Long id = leafId;
+        while (id != null) {
+            Map<String, Object> row = jdbc.queryForMap("SELECT id, name, parent_folder_id FROM folders WHERE id = ?", id);
+            id = (Long) row.get("parent_folder_id");
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int ancestorsPath() {
+        List<Long> ids = new ArrayList<>();
+        for (String id : leafPath.split("/")) {
+            if (!id.isEmpty()) {
+                ids.add(Long.parseLong(id));
+            }
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        return jdbc.queryForList("SELECT id, name FROM folders WHERE id IN (" + placeholders + ") ORDER BY depth",
+                ids.toArray()).size();
+    }
+
+    @Benchmark
+    public long subtreeSizeAdjacency() {
+        long total = 0;
+        List<Long> subtree = collectDescendants(rootId);
+        subtree.add(rootId);
+        for (Long id : subtree) {
+            total += jdbc.queryForObject("SELECT COALESCE(SUM(file_size), 0) FROM files WHERE folder_id = ?", Long.class, id);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long subtreeSizePath() {
+        return jdbc.queryForObject("SELECT COALESCE(SUM(fi.file_size), 0) FROM files fi JOIN folders f ON f.id = fi.folder_id " +
+                "WHERE f.user_id = ? AND f.path LIKE CONCAT(?, '%')", Long.class, USER_ID, rootPath);
+    }
+
+    private List<Long> collectDescendants(long folderId) {
+        List<Long> result = new ArrayList<>();
+        List<Long> pending = new ArrayList<>(List.of(folderId));
+        while (!pending.isEmpty()) {
+            Long parent = pending.remove(pending.size() - 1);
+            List<Long> children = jdbc.queryForList(
+                    "SELECT id FROM folders WHERE user_id = ? AND parent_folder_id = ?", Long.class, USER_ID, parent);
+            result.addAll(children);
+            pending.addAll(children);
+        }
+        return result;
+    }
+}
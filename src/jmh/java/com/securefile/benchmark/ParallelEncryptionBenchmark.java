@@ -0,0 +1,53 @@
+package com.securefile.benchmark;
+
+import com.securefile.service.EncryptionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming encryption of one large file with the segment work spread over
+ * {@code parallelism} crypto workers; {@code 1} is the single-threaded path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ParallelEncryptionBenchmark {
+
+    @Param({"1", "4", "8"})
+    public int parallelism;
+
+    @Param({"67108864"})
+    public int payloadSize;
+
+    private EncryptionService engine;
+    private byte[] plaintext;
+
+    @Setup
+    public void setUp() {
+        engine = new EncryptionService(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(engine, "encryptionKey", EncryptionBenchmark.KEY);
+        ReflectionTestUtils.setField(engine, "parallelism", parallelism);
+        ReflectionTestUtils.setField(engine, "parallelThreshold", 1L);
+        engine.init();
+        plaintext = new byte[payloadSize];
+        ThreadLocalRandom.current().nextBytes(plaintext);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public long encryptStream() throws Exception {
+        return engine.encrypt(new ByteArrayInputStream(plaintext), OutputStream.nullOutputStream(), payloadSize);
+    }
+}
@@ -0,0 +1,26 @@
+package com.securefile.config;
+
+import com.securefile.metrics.QueryCountInspector;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JpaConfig {
+
+    // Uploads spend seconds encrypting between queries, and batch uploads wait on workers that need
+    // connections of their own, so return the connection to the pool after each transaction. Run with
+    // spring.jpa.open-in-view=false too, or lazy loads during rendering take connections back out
+    @Bean
+    public HibernatePropertiesCustomizer connectionHandlingCustomizer() {
+        return properties -> properties.putIfAbsent(AvailableSettings.CONNECTION_HANDLING,
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+
+    // Feeds the per-request statement counts recorded by QueryCountFilter
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer() {
+        return properties -> properties.putIfAbsent(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountInspector());
+    }
+}
@@ -0,0 +1,69 @@
+package com.securefile.config;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.securefile.security.CustomUserDetailsService;
+import com.securefile.service.AuditLogWriter;
+import com.securefile.service.RenditionStore;
+import com.securefile.storage.BlockCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Function;
+
+/**
+ * Gauges over state the services already track. Everything here is read when Prometheus scrapes,
+ * so none of it costs anything on the request path.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder auditWriterMetrics(AuditLogWriter auditLogWriter) {
+        return registry -> {
+            Gauge.builder("securefile.audit.queue.depth", auditLogWriter, AuditLogWriter::getQueueDepth)
+                    .description("Audit events waiting for the background writer")
+                    .register(registry);
+            FunctionCounter.builder("securefile.audit.dropped", auditLogWriter, AuditLogWriter::getDroppedEvents)
+                    .description("Audit events discarded because the queue was full")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder userCacheMetrics(CustomUserDetailsService userDetailsService) {
+        return registry -> cacheStats(registry, "users", userDetailsService, CustomUserDetailsService::getCacheStats);
+    }
+
+    @Bean
+    public MeterBinder storageCacheMetrics(BlockCache blockCache, RenditionStore renditionStore) {
+        return registry -> {
+            cacheStats(registry, "blocks", blockCache, BlockCache::stats);
+            Gauge.builder("securefile.block.cache.size", blockCache, BlockCache::cachedBytes)
+                    .description("Off-heap memory held by cached storage blocks")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("securefile.preview.cache.size", renditionStore, RenditionStore::getTotalBytes)
+                    .description("Disk used by stored preview renditions")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    // Same names and tags as Micrometer's own cache metrics, so standard cache dashboards work. The
+    // meters hold the owner weakly, which is fine for singleton beans but rules out a bound method reference
+    private static <T> void cacheStats(MeterRegistry registry, String cache, T owner, Function<T, CacheStats> stats) {
+        FunctionCounter.builder("cache.gets", owner, o -> stats.apply(o).hitCount())
+                .tags("cache", cache, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", owner, o -> stats.apply(o).missCount())
+                .tags("cache", cache, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", owner, o -> stats.apply(o).evictionCount())
+                .tag("cache", cache)
+                .register(registry);
+    }
+}
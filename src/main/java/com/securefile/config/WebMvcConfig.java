@@ -0,0 +1,19 @@
+package com.securefile.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    // Streaming downloads run as async requests; the container default (30s) would cut off large files
+    @Value("${file.download.timeout-ms:-1}")
+    private long downloadTimeoutMs;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(downloadTimeoutMs);
+    }
+}
@@ -1,15 +1,27 @@
 package com.securefile.controller;
 
 import com.securefile.model.AuditLog;
+import com.securefile.model.AuditLogFilter;
+import com.securefile.model.AuditLogPage;
 import com.securefile.model.User;
+import com.securefile.service.AuditArchiveService;
 import com.securefile.service.AuditService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/audit")
@@ -17,6 +29,7 @@ import java.util.List;
 public class AuditController {
 
     private final AuditService auditService;
+    private final AuditArchiveService auditArchiveService;
 
     @GetMapping("/user")
     public ResponseEntity<List<AuditLog>> getUserAuditLogs(@AuthenticationPrincipal User user) {
@@ -26,8 +39,70 @@ public class AuditController {
 
     @GetMapping("/admin")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<AuditLog>> getAllAuditLogs() {
-        List<AuditLog> logs = auditService.getAllAuditLogs();
-        return ResponseEntity.ok(logs);
+    public ResponseEntity<?> getAllAuditLogs(AuditLogFilter filter,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(defaultValue = "50") int size) {
+        try {
+            AuditLogPage page = auditService.getAuditLogPage(filter, cursor, size);
+            return ResponseEntity.ok(page);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/admin/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportAuditLogs(AuditLogFilter filter,
+                                                                 @RequestParam(defaultValue = "ndjson") String format) {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        MediaType contentType = csv
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON;
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(contentType);
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(csv ? "audit-logs.csv" : "audit-logs.ndjson")
+                .build());
+        StreamingResponseBody body = out -> auditService.exportAuditLogs(filter, csv ? "csv" : "ndjson", out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    @GetMapping("/archive/segments")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> listArchivedSegments() {
+        try {
+            return ResponseEntity.ok(auditArchiveService.listSegments());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/archive")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> queryArchive(AuditLogFilter filter) {
+        StreamingResponseBody body = out -> auditArchiveService.query(filter, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @PostMapping("/archive/rollover")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> rollover() {
+        try {
+            return ResponseEntity.ok(Map.of("archived", auditArchiveService.rollover()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/archive/restore")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> restore(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        try {
+            return ResponseEntity.ok(Map.of("restored", auditArchiveService.restore(day)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
-} 
\ No newline at end of file
+}
@@ -1,20 +1,26 @@
 package com.securefile.controller;
 
+import com.securefile.model.BatchUploadResult;
 import com.securefile.model.File;
+import com.securefile.model.Folder;
 import com.securefile.model.User;
+import com.securefile.repository.UserRepository;
 import com.securefile.service.FileService;
+import com.securefile.service.FolderService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.Resource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.security.Principal;
 import java.util.List;
 import java.util.Map;
 
@@ -24,6 +30,12 @@ import java.util.Map;
 public class FileController {
 
     private final FileService fileService;
+    private final FileResponseFactory fileResponseFactory;
+    private final FolderService folderService;
+    private final UserRepository userRepository;
+
+    @Value("${file.batch-upload.max-files:500}")
+    private int maxBatchFiles;
 
     @PostMapping("/upload")
     public ResponseEntity<?> uploadFile(
@@ -38,21 +50,39 @@ public class FileController {
         }
     }
 
+    // Many files in one multipart request; the response lists the outcome of each part in order
+    @PostMapping("/upload/batch")
+    public ResponseEntity<?> uploadFiles(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam(value = "folderId", required = false) Long folderId,
+            Principal principal) {
+        User user = userRepository.findByUsername(principal.getName()).orElse(null);
+        if (user == null) return ResponseEntity.status(401).body("Unauthorized");
+        if (files.size() > maxBatchFiles) {
+            return ResponseEntity.badRequest().body(Map.of("error", "At most " + maxBatchFiles + " files per batch"));
+        }
+        Folder folder = null;
+        if (folderId != null) {
+            folder = folderService.getFolderById(folderId).orElse(null);
+            if (folder == null || !folder.getUser().getId().equals(user.getId())) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Folder not found"));
+            }
+        }
+        List<BatchUploadResult> results = fileService.uploadFiles(files, user, folder);
+        return ResponseEntity.ok(results);
+    }
+
     @GetMapping("/download/{fileId}")
-    public ResponseEntity<Resource> downloadFile(
+    public ResponseEntity<StreamingResponseBody> downloadFile(
             @PathVariable Long fileId,
-            @AuthenticationPrincipal User user) {
+            @AuthenticationPrincipal User user,
+            @RequestHeader HttpHeaders headers) {
         try {
-            byte[] fileContent = fileService.downloadFile(fileId, user);
-            File file = fileService.getFileById(fileId);
-            
-            ByteArrayResource resource = new ByteArrayResource(fileContent);
-            
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getOriginalFileName() + "\"")
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .contentLength(fileContent.length)
-                    .body(resource);
+            File file = fileService.getUserFile(fileId, user);
+            ContentDisposition disposition = ContentDisposition.attachment()
+                    .filename(file.getOriginalFileName())
+                    .build();
+            return fileResponseFactory.stream(file, MediaType.APPLICATION_OCTET_STREAM, disposition, headers);
         } catch (Exception e) {
             return ResponseEntity.badRequest().build();
         }
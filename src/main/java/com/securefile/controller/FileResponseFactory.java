@@ -0,0 +1,193 @@
+package com.securefile.controller;
+
+import com.securefile.model.CompressionCodec;
+import com.securefile.model.File;
+import com.securefile.service.FileService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.function.ThrowingSupplier;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Builds streaming responses for stored files, answering single-range {@code Range} requests
+ * (guarded by {@code If-Range}) with 206 and decrypting only the part of the file that was asked for.
+ * Compressed files are always sent whole.
+ * <p>
+ * Responses carry the content hash as a strong {@code ETag} and {@code updatedAt} as
+ * {@code Last-Modified}, and conditional requests are answered with 304 from the row alone,
+ * before storage or the cipher is touched.
+ */
+@Component
+@RequiredArgsConstructor
+public class FileResponseFactory {
+
+    private final FileService fileService;
+
+    public ResponseEntity<StreamingResponseBody> stream(File file, MediaType contentType,
+                                                        ContentDisposition disposition, HttpHeaders requestHeaders) {
+        long total = file.getFileSize();
+        long lastModified = lastModified(file);
+        String eTag = eTag(file, null);
+
+        HttpHeaders headers = validators(eTag, lastModified);
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+        headers.setContentType(contentType);
+        if (disposition != null) {
+            headers.setContentDisposition(disposition);
+        }
+        // Compressed files have to be inflated from the start, so they are always sent whole
+        boolean rangeable = file.getCompression() == CompressionCodec.NONE;
+        headers.set(HttpHeaders.ACCEPT_RANGES, rangeable ? "bytes" : "none");
+
+        List<HttpRange> ranges;
+        try {
+            ranges = rangeable && isRangeApplicable(requestHeaders, eTag, lastModified)
+                    ? requestHeaders.getRange() : List.of();
+        } catch (IllegalArgumentException e) {
+            return rangeNotSatisfiable(total);
+        }
+
+        // Multiple ranges are rare for downloads; answering with the full body is allowed
+        if (ranges.size() != 1) {
+            headers.setContentLength(total);
+            return ResponseEntity.ok().headers(headers)
+                    .body(out -> fileService.downloadFile(file, out));
+        }
+
+        long start;
+        long end;
+        try {
+            start = ranges.get(0).getRangeStart(total);
+            end = ranges.get(0).getRangeEnd(total);
+        } catch (IllegalArgumentException e) {
+            return rangeNotSatisfiable(total);
+        }
+        if (start > end) {
+            return rangeNotSatisfiable(total);
+        }
+        long length = end - start + 1;
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + total);
+        headers.setContentLength(length);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers)
+                .body(out -> fileService.downloadFile(file, start, length, out));
+    }
+
+    /**
+     * Serves a preview rendition of {@code file} as a JPEG. It is a different representation from
+     * the original, so it has its own entity tag. The rendition is only read if the client's copy
+     * is stale; returns null if it has been evicted in the meantime.
+     */
+    public ResponseEntity<StreamingResponseBody> rendition(File file, HttpHeaders requestHeaders,
+                                                           ThrowingSupplier<Optional<byte[]>> rendition) {
+        long lastModified = lastModified(file);
+        String eTag = eTag(file, "preview");
+        HttpHeaders headers = validators(eTag, lastModified);
+        if (isNotModified(requestHeaders, eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(headers).build();
+        }
+        Optional<byte[]> image = rendition.get();
+        if (image.isEmpty()) {
+            return null;
+        }
+        byte[] bytes = image.get();
+        headers.setContentType(MediaType.IMAGE_JPEG);
+        headers.setContentLength(bytes.length);
+        return ResponseEntity.ok().headers(headers).body(out -> out.write(bytes));
+    }
+
+    // Private content: only the user's own browser may keep a copy, and it must revalidate before reuse
+    private static HttpHeaders validators(String eTag, long lastModified) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.noCache().cachePrivate());
+        if (eTag != null) {
+            headers.setETag(eTag);
+        }
+        if (lastModified > 0) {
+            headers.setLastModified(lastModified);
+        }
+        return headers;
+    }
+
+    // If-None-Match takes precedence over If-Modified-Since (RFC 9110, section 13.2.2)
+    private static boolean isNotModified(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            if (eTag == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch) {
+                if (candidate.equals("*") || weakTag(candidate).equals(weakTag(eTag))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (lastModified <= 0) {
+            return false;
+        }
+        try {
+            long since = requestHeaders.getIfModifiedSince();
+            return since >= 0 && lastModified / 1000 <= since / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static boolean isRangeApplicable(HttpHeaders requestHeaders, String eTag, long lastModified) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("W/")) {
+            // If-Range needs a strong comparison, which a weak tag never passes
+            return false;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(eTag);
+        }
+        try {
+            long since = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return lastModified > 0 && since / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // The content hash names the plaintext, so it is a strong validator for every representation of it
+    private static String eTag(File file, String variant) {
+        if (file.getContentHash() == null) {
+            return null;
+        }
+        return "\"" + file.getContentHash() + (variant != null ? "-" + variant : "") + "\"";
+    }
+
+    private static String weakTag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
+    private static long lastModified(File file) {
+        if (file.getUpdatedAt() == null) {
+            return -1;
+        }
+        return file.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static ResponseEntity<StreamingResponseBody> rangeNotSatisfiable(long total) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + total)
+                .build();
+    }
+}
@@ -3,11 +3,16 @@ package com.securefile.controller;
 import com.securefile.model.Folder;
 import com.securefile.model.User;
 import com.securefile.repository.UserRepository;
+import com.securefile.service.FolderArchiveService;
 import com.securefile.service.FolderService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.security.Principal;
 import java.util.List;
@@ -18,6 +23,7 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class FolderController {
     private final FolderService folderService;
+    private final FolderArchiveService folderArchiveService;
     private final UserRepository userRepository;
 
     @PostMapping("/create")
@@ -54,14 +60,90 @@ public class FolderController {
     }
 
     @DeleteMapping("/{folderId}")
-    public ResponseEntity<?> deleteFolder(@PathVariable Long folderId, Principal principal) {
+    public ResponseEntity<?> deleteFolder(@PathVariable Long folderId,
+                                          @RequestParam(defaultValue = "true") boolean deleteFiles,
+                                          Principal principal) {
         User user = userRepository.findByUsername(principal.getName()).orElse(null);
         if (user == null) return ResponseEntity.status(401).body("Unauthorized");
         Folder folder = folderService.getFolderById(folderId).orElse(null);
         if (folder == null || !folder.getUser().getId().equals(user.getId())) {
             return ResponseEntity.status(403).body("Forbidden");
         }
-        folderService.deleteFolder(folderId);
+        folderService.deleteFolderTree(folder, deleteFiles);
         return ResponseEntity.ok(Map.of("message", "Folder deleted successfully"));
     }
-} 
\ No newline at end of file
+
+    @PostMapping("/move/{folderId}")
+    public ResponseEntity<?> moveFolder(@PathVariable Long folderId,
+                                        @RequestParam(required = false) Long parentFolderId,
+                                        Principal principal) {
+        User user = userRepository.findByUsername(principal.getName()).orElse(null);
+        if (user == null) return ResponseEntity.status(401).body("Unauthorized");
+        Folder folder = folderService.getFolderById(folderId).orElse(null);
+        if (folder == null || !folder.getUser().getId().equals(user.getId())) {
+            return ResponseEntity.status(403).body("Forbidden");
+        }
+        Folder parentFolder = null;
+        if (parentFolderId != null) {
+            parentFolder = folderService.getFolderById(parentFolderId).orElse(null);
+            if (parentFolder == null || !parentFolder.getUser().getId().equals(user.getId())) {
+                return ResponseEntity.status(403).body("Forbidden");
+            }
+        }
+        try {
+            folderService.moveFolder(folder, parentFolder);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        return ResponseEntity.ok(Map.of("message", "Folder moved successfully"));
+    }
+
+    @GetMapping("/{folderId}/descendants")
+    public ResponseEntity<?> getDescendants(@PathVariable Long folderId, Principal principal) {
+        Folder folder = getOwnedFolder(folderId, principal);
+        if (folder == null) return ResponseEntity.status(403).body("Forbidden");
+        return ResponseEntity.ok(folderService.getDescendants(folder).stream().map(this::toSummary).toList());
+    }
+
+    @GetMapping("/{folderId}/breadcrumb")
+    public ResponseEntity<?> getBreadcrumb(@PathVariable Long folderId, Principal principal) {
+        Folder folder = getOwnedFolder(folderId, principal);
+        if (folder == null) return ResponseEntity.status(403).body("Forbidden");
+        return ResponseEntity.ok(folderService.getBreadcrumb(folder).stream().map(this::toSummary).toList());
+    }
+
+    @GetMapping("/{folderId}/stats")
+    public ResponseEntity<?> getFolderStats(@PathVariable Long folderId, Principal principal) {
+        Folder folder = getOwnedFolder(folderId, principal);
+        if (folder == null) return ResponseEntity.status(403).body("Forbidden");
+        return ResponseEntity.ok(folderService.getFolderStats(folder));
+    }
+
+    // The folder and all of its subfolders as a ZIP, written while the files are decrypted
+    @GetMapping("/{folderId}/download")
+    public ResponseEntity<StreamingResponseBody> downloadFolder(@PathVariable Long folderId, Principal principal) {
+        Folder folder = getOwnedFolder(folderId, principal);
+        if (folder == null) return ResponseEntity.status(403).build();
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(folderArchiveService.archiveName(folder))
+                .build();
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(out -> folderArchiveService.writeZip(folder, out));
+    }
+
+    private Folder getOwnedFolder(Long folderId, Principal principal) {
+        User user = userRepository.findByUsername(principal.getName()).orElse(null);
+        if (user == null) return null;
+        Folder folder = folderService.getFolderById(folderId).orElse(null);
+        if (folder == null || !folder.getUser().getId().equals(user.getId())) {
+            return null;
+        }
+        return folder;
+    }
+
+    private Map<String, Object> toSummary(Folder folder) {
+        return Map.of("id", folder.getId(), "name", folder.getName(), "depth", folder.getDepth());
+    }
+}
@@ -0,0 +1,118 @@
+package com.securefile.controller;
+
+import com.securefile.model.File;
+import com.securefile.model.Folder;
+import com.securefile.model.UploadSession;
+import com.securefile.model.User;
+import com.securefile.repository.UserRepository;
+import com.securefile.service.FolderService;
+import com.securefile.service.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+public class UploadController {
+
+    private final UploadSessionService uploadSessionService;
+    private final FolderService folderService;
+    private final UserRepository userRepository;
+
+    @PostMapping
+    public ResponseEntity<?> createSession(
+            @RequestParam String fileName,
+            @RequestParam(required = false) String contentType,
+            @RequestParam long totalSize,
+            @RequestParam(required = false) Long folderId,
+            Principal principal) {
+        try {
+            User user = currentUser(principal);
+            Folder folder = null;
+            if (folderId != null) {
+                folder = folderService.getFolderById(folderId)
+                        .filter(f -> f.getUser().getId().equals(user.getId()))
+                        .orElseThrow(() -> new RuntimeException("Folder not found"));
+            }
+            UploadSession session = uploadSessionService.createSession(fileName, contentType, totalSize, user, folder);
+            return ResponseEntity.ok(describe(session, List.of()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PutMapping("/{sessionId}/chunks/{index}")
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable String sessionId,
+            @PathVariable int index,
+            Principal principal,
+            HttpServletRequest request) {
+        try {
+            UploadSession session = uploadSessionService.getSession(sessionId, currentUser(principal));
+            uploadSessionService.writeChunk(session, index, request.getInputStream());
+            return ResponseEntity.ok(Map.of("index", index));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<?> getSession(
+            @PathVariable String sessionId,
+            Principal principal) {
+        try {
+            UploadSession session = uploadSessionService.getSession(sessionId, currentUser(principal));
+            return ResponseEntity.ok(describe(session, uploadSessionService.getReceivedChunks(session)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/{sessionId}/commit")
+    public ResponseEntity<?> commit(
+            @PathVariable String sessionId,
+            Principal principal) {
+        try {
+            UploadSession session = uploadSessionService.getSession(sessionId, currentUser(principal));
+            File file = uploadSessionService.commit(session);
+            return ResponseEntity.ok(file);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<?> abort(
+            @PathVariable String sessionId,
+            Principal principal) {
+        try {
+            uploadSessionService.abort(uploadSessionService.getSession(sessionId, currentUser(principal)));
+            return ResponseEntity.ok().build();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private User currentUser(Principal principal) {
+        return userRepository.findByUsername(principal.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+    }
+
+    private static Map<String, Object> describe(UploadSession session, List<Integer> receivedChunks) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("sessionId", session.getId());
+        body.put("fileName", session.getOriginalFileName());
+        body.put("totalSize", session.getTotalSize());
+        body.put("chunkSize", session.getChunkSize());
+        body.put("chunkCount", session.getChunkCount());
+        body.put("receivedChunks", receivedChunks);
+        return body;
+    }
+}
@@ -1,12 +1,19 @@
 package com.securefile.controller;
 
 import com.securefile.model.File;
+import com.securefile.model.FileSummary;
 import com.securefile.model.User;
 import com.securefile.repository.UserRepository;
 import com.securefile.service.FileService;
+import com.securefile.service.FolderArchiveService;
+import com.securefile.service.PreviewRenditionService;
 import com.securefile.service.FolderService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -17,12 +24,14 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.security.Principal;
 import java.util.List;
+import java.util.Set;
 
 @Controller
 @RequiredArgsConstructor
@@ -31,8 +40,14 @@ public class WebController {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final FolderService folderService;
+    private final FileResponseFactory fileResponseFactory;
+    private final FolderArchiveService folderArchiveService;
+    private final PreviewRenditionService previewRenditionService;
     private static final Logger logger = LoggerFactory.getLogger(WebController.class);
 
+    private static final Set<String> DASHBOARD_SORTS = Set.of("createdAt", "originalFileName", "fileSize");
+    private static final int MAX_DASHBOARD_PAGE_SIZE = 100;
+
     @GetMapping({"/", "/login"})
     public String login() {
         return "login";
@@ -78,7 +93,12 @@ public class WebController {
     }
 
     @GetMapping("/dashboard")
-    public String dashboard(@RequestParam(value = "folderId", required = false) Long folderId, Principal principal, Model model) {
+    public String dashboard(@RequestParam(value = "folderId", required = false) Long folderId,
+                            @RequestParam(value = "page", defaultValue = "0") int page,
+                            @RequestParam(value = "size", defaultValue = "25") int size,
+                            @RequestParam(value = "sort", defaultValue = "createdAt") String sort,
+                            @RequestParam(value = "dir", defaultValue = "desc") String dir,
+                            Principal principal, Model model) {
         try {
             if (principal == null) {
                 logger.error("Principal is null");
@@ -90,19 +110,22 @@ public class WebController {
                 return "redirect:/login";
             }
             List<com.securefile.model.Folder> folders = folderService.getUserFolders(user);
-            List<File> files;
-            if (folderId != null) {
-                files = fileService.getUserFiles(user).stream()
-                        .filter(f -> f.getFolder() != null && f.getFolder().getId().equals(folderId))
-                        .toList();
-            } else {
-                files = fileService.getUserFiles(user).stream()
-                        .filter(f -> f.getFolder() == null)
-                        .toList();
-            }
+            String sortProperty = DASHBOARD_SORTS.contains(sort) ? sort : "createdAt";
+            Sort.Direction direction = "asc".equalsIgnoreCase(dir) ? Sort.Direction.ASC : Sort.Direction.DESC;
+            PageRequest pageRequest = PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_DASHBOARD_PAGE_SIZE)),
+                    Sort.by(direction, sortProperty).and(Sort.by(direction, "id")));
+            Page<FileSummary> files = fileService.getFolderFiles(user, folderId, pageRequest);
             model.addAttribute("folders", folders);
-            model.addAttribute("files", files);
+            model.addAttribute("files", files.getContent());
+            model.addAttribute("filePage", files);
+            model.addAttribute("sort", sortProperty);
+            model.addAttribute("dir", direction == Sort.Direction.ASC ? "asc" : "desc");
             model.addAttribute("selectedFolderId", folderId);
+            if (folderId != null) {
+                folderService.getFolderById(folderId)
+                        .filter(folder -> folder.getUser().getId().equals(user.getId()))
+                        .ifPresent(folder -> model.addAttribute("breadcrumb", folderService.getBreadcrumb(folder)));
+            }
             return "dashboard";
         } catch (Exception e) {
             logger.error("Exception in dashboard: ", e);
@@ -120,7 +143,7 @@ public class WebController {
     }
 
     @PostMapping("/upload")
-    public String handleUpload(@RequestParam("file") MultipartFile file,
+    public String handleUpload(@RequestParam("files") List<MultipartFile> files,
                               @RequestParam(value = "folderId", required = false) Long folderId,
                               Principal principal, Model model) {
         if (principal == null) return "redirect:/login";
@@ -129,11 +152,18 @@ public class WebController {
         com.securefile.model.Folder folder = null;
         if (folderId != null) {
             folder = folderService.getFolderById(folderId).orElse(null);
+            if (folder == null || !folder.getUser().getId().equals(user.getId())) {
+                model.addAttribute("error", "Folder not found");
+                return "upload";
+            }
         }
-        try {
-            fileService.uploadFile(file, user, folder);
-        } catch (Exception e) {
-            model.addAttribute("error", e.getMessage());
+        List<String> failures = fileService.uploadFiles(files, user, folder).stream()
+                .filter(result -> !result.isSuccess())
+                .map(result -> result.getFileName() + ": " + result.getError())
+                .toList();
+        if (!failures.isEmpty()) {
+            model.addAttribute("error", String.join("; ", failures));
+            model.addAttribute("selectedFolderId", folderId);
             return "upload";
         }
         if (folderId != null) {
@@ -143,37 +173,54 @@ public class WebController {
     }
 
     @GetMapping("/download/{fileId}")
-    public ResponseEntity<org.springframework.core.io.Resource> downloadFile(@PathVariable Long fileId, Principal principal) throws Exception {
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable Long fileId,
+                                                              @RequestHeader HttpHeaders headers,
+                                                              Principal principal) throws Exception {
         User user = userRepository.findByUsername(principal.getName()).orElse(null);
         if (user == null) throw new RuntimeException("Unauthorized");
         
-        byte[] fileContent = fileService.downloadFile(fileId, user);
-        File file = fileService.getFileById(fileId);
-        
-        org.springframework.core.io.ByteArrayResource resource = new org.springframework.core.io.ByteArrayResource(fileContent);
-        
+        File file = fileService.getUserFile(fileId, user);
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(file.getOriginalFileName())
+                .build();
+        return fileResponseFactory.stream(file, MediaType.parseMediaType(file.getFileType()), disposition, headers);
+    }
+
+    @GetMapping("/folders/{folderId}/download")
+    public ResponseEntity<StreamingResponseBody> downloadFolder(@PathVariable Long folderId, Principal principal) {
+        User user = userRepository.findByUsername(principal.getName()).orElse(null);
+        if (user == null) throw new RuntimeException("Unauthorized");
+
+        com.securefile.model.Folder folder = folderService.getFolderById(folderId)
+                .filter(f -> f.getUser().getId().equals(user.getId()))
+                .orElseThrow(() -> new RuntimeException("Folder not found"));
+        ContentDisposition disposition = ContentDisposition.attachment()
+                .filename(folderArchiveService.archiveName(folder))
+                .build();
         return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getOriginalFileName() + "\"")
-                .contentType(MediaType.parseMediaType(file.getFileType()))
-                .contentLength(fileContent.length)
-                .body(resource);
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .body(out -> folderArchiveService.writeZip(folder, out));
     }
 
     @GetMapping("/preview/{fileId}")
-    public ResponseEntity<org.springframework.core.io.Resource> previewFile(@PathVariable Long fileId, Principal principal) throws Exception {
+    public ResponseEntity<StreamingResponseBody> previewFile(@PathVariable Long fileId,
+                                                             @RequestHeader HttpHeaders headers,
+                                                             Principal principal) throws Exception {
         User user = userRepository.findByUsername(principal.getName()).orElse(null);
         if (user == null) throw new RuntimeException("Unauthorized");
         
-        byte[] fileContent = fileService.downloadFile(fileId, user);
-        File file = fileService.getFileById(fileId);
+        File file = fileService.getUserFile(fileId, user);
         logger.info("Preview requested: {} (type: {})", file.getOriginalFileName(), file.getFileType());
-        
-        org.springframework.core.io.ByteArrayResource resource = new org.springframework.core.io.ByteArrayResource(fileContent);
-        
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(file.getFileType()))
-                .contentLength(fileContent.length)
-                .body(resource);
+        if (previewRenditionService.hasRendition(file)) {
+            ResponseEntity<StreamingResponseBody> rendition = fileResponseFactory.rendition(file, headers,
+                    () -> previewRenditionService.getRendition(file));
+            if (rendition != null) {
+                return rendition;
+            }
+        }
+        previewRenditionService.requestRendition(file);
+        return fileResponseFactory.stream(file, MediaType.parseMediaType(file.getFileType()), null, headers);
     }
 
     @GetMapping("/delete/{fileId}")
@@ -254,9 +301,8 @@ public class WebController {
             return "redirect:/dashboard";
         }
         
-        // Move files to root before deleting folder
-        fileService.moveFilesToRoot(folder);
-        folderService.deleteFolder(folder);
+        // Files anywhere in the subtree are moved to root, then the folders are removed
+        folderService.deleteFolderTree(folder, false);
         return "redirect:/dashboard";
     }
 } 
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.securefile.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency, size and throughput of uploads and downloads. Uploads are tagged with how they
+ * arrived ({@code single}, {@code batch} or {@code resumable}, one chunk at a time); downloads
+ * cover every read of stored content, including preview rendering and folder archives.
+ */
+@Component
+@RequiredArgsConstructor
+public class TransferMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public void recordUpload(String source, long bytes, long nanos, boolean success) {
+        record("securefile.upload", "Files received, from the first byte read to the row saved",
+                source, bytes, nanos, success);
+    }
+
+    public void recordDownload(long bytes, long nanos, boolean success) {
+        record("securefile.download", "Stored content decrypted and written out", "stored", bytes, nanos, success);
+    }
+
+    private void record(String name, String description, String source, long bytes, long nanos, boolean success) {
+        Timer.builder(name)
+                .description(description)
+                .tag("source", source)
+                .tag("outcome", success ? "success" : "error")
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofMinutes(30))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (!success) {
+            return;
+        }
+        DistributionSummary.builder(name + ".size")
+                .baseUnit("bytes")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(bytes);
+        if (bytes == 0) {
+            return;
+        }
+        throughput(name + ".throughput")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(bytesPerSecond(bytes, nanos));
+    }
+
+    /**
+     * A bytes-per-second summary with a histogram from 64 KiB/s to 16 GiB/s, wide enough for both
+     * a slow client and an in-memory cipher.
+     */
+    public static DistributionSummary.Builder throughput(String name) {
+        return DistributionSummary.builder(name)
+                .baseUnit("bytes.per.second")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(64.0 * 1024)
+                .maximumExpectedValue(16.0 * 1024 * 1024 * 1024);
+    }
+
+    public static double bytesPerSecond(long bytes, long nanos) {
+        return nanos > 0 ? bytes * 1e9 / nanos : 0;
+    }
+}
@@ -1,5 +1,6 @@
 package com.securefile.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,12 +11,19 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "audit_logs")
+@Table(name = "audit_logs", indexes = {
+        @Index(name = "idx_audit_logs_created", columnList = "created_at, id"),
+        @Index(name = "idx_audit_logs_user_created", columnList = "user_id, created_at, id"),
+        @Index(name = "idx_audit_logs_action_created", columnList = "action, created_at, id"),
+        @Index(name = "idx_audit_logs_ip_created", columnList = "ip_address, created_at, id")
+})
 public class AuditLog {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Lazy, so kept out of JSON written after the transaction has ended
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
@@ -32,6 +40,10 @@ public class AuditLog {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    public Long getUserId() {
+        return user != null ? user.getId() : null;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,23 @@
+package com.securefile.model;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional criteria for audit log queries; {@code null} fields are not applied.
+ * {@code from} is inclusive and {@code to} is exclusive.
+ */
+@Data
+public class AuditLogFilter {
+    private Long userId;
+    private String action;
+    private String ipAddress;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+}
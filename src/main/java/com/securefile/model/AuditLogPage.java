@@ -0,0 +1,16 @@
+package com.securefile.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One keyset page of audit logs. {@code nextCursor} is {@code null} on the last page.
+ */
+@Data
+@AllArgsConstructor
+public class AuditLogPage {
+    private List<AuditLogSummary> items;
+    private String nextCursor;
+}
@@ -0,0 +1,24 @@
+package com.securefile.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flat, read-only view of an audit log row, used for paging and export so the
+ * {@link User} association never has to be loaded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditLogSummary {
+    private Long id;
+    private Long userId;
+    private String username;
+    private String action;
+    private String details;
+    private String ipAddress;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,30 @@
+package com.securefile.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one part of a batch upload; {@code fileId} is set on success, {@code error} otherwise.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchUploadResult {
+    private String fileName;
+    private Long fileId;
+    private Long fileSize;
+    private String error;
+
+    public static BatchUploadResult succeeded(File file) {
+        return new BatchUploadResult(file.getOriginalFileName(), file.getId(), file.getFileSize(), null);
+    }
+
+    public static BatchUploadResult failed(String fileName, String error) {
+        return new BatchUploadResult(fileName, null, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
@@ -0,0 +1,7 @@
+package com.securefile.model;
+
+public enum CompressionCodec {
+    NONE,
+    // zlib-wrapped DEFLATE, applied to the plaintext before encryption
+    DEFLATE
+}
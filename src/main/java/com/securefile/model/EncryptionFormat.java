@@ -0,0 +1,8 @@
+package com.securefile.model;
+
+public enum EncryptionFormat {
+    // Single IV followed by one AES/CBC stream; rows written before the segmented format have no value
+    CBC,
+    // Header followed by independently authenticated AES/GCM segments
+    GCM_SEGMENTED
+}
@@ -1,5 +1,6 @@
 package com.securefile.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,7 +11,9 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "files")
+@Table(name = "files", indexes = {
+        @Index(name = "idx_files_user_folder_created", columnList = "user_id, folder_id, created_at")
+})
 public class File {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,13 +31,32 @@ public class File {
     @Column(nullable = false)
     private Long fileSize;
 
-    @Column(nullable = false)
+    // Key of the stored content in the StorageBackend
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    // Absolute path used before storage keys; cleared once StorageMigrationService moves the file
+    @Column(name = "file_path")
     private String filePath;
 
+    // SHA-256 of the plaintext, hex encoded, taken while the upload is stored; used as the entity tag.
+    // Null for files stored before content-addressed storage
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Null for files stored before content-addressed storage; those own their content outright
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "blob_id")
+    private FileBlob blob;
+
+    // Lazy associations stay out of JSON: responses are written after the transaction has ended
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "folder_id")
     private Folder folder;
@@ -42,6 +64,14 @@ public class File {
     @Column(nullable = false)
     private boolean encrypted;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "encryption_format")
+    private EncryptionFormat encryptionFormat;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "compression")
+    private CompressionCodec compression;
+
     @Column(nullable = false)
     private boolean isPublic = false;
 
@@ -51,6 +81,19 @@ public class File {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    public EncryptionFormat getEncryptionFormat() {
+        return encryptionFormat != null ? encryptionFormat : EncryptionFormat.CBC;
+    }
+
+    public CompressionCodec getCompression() {
+        return compression != null ? compression : CompressionCodec.NONE;
+    }
+
+    // Reading the id does not initialize the proxy
+    public Long getFolderId() {
+        return folder != null ? folder.getId() : null;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
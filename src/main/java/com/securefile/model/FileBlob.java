@@ -0,0 +1,56 @@
+package com.securefile.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "file_blobs")
+public class FileBlob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 of the plaintext, hex encoded
+    @Column(nullable = false, unique = true, length = 64)
+    private String contentHash;
+
+    @Column(name = "storage_key")
+    private String storageKey;
+
+    // Absolute path used before storage keys; cleared once StorageMigrationService moves the file
+    @Column(name = "storage_path")
+    private String storagePath;
+
+    @Column(nullable = false)
+    private Long storedSize;
+
+    // CRC-32 of the plaintext, needed up front for uncompressed ZIP entries; null for blobs stored earlier
+    @Column(name = "plaintext_crc32")
+    private Long plaintextCrc32;
+
+    // Encoding applied before encryption; every File sharing the blob inherits it
+    @Enumerated(EnumType.STRING)
+    @Column(name = "compression")
+    private CompressionCodec compression;
+
+    @Column(nullable = false)
+    private int referenceCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public CompressionCodec getCompression() {
+        return compression != null ? compression : CompressionCodec.NONE;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,22 @@
+package com.securefile.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The columns a file listing needs, selected directly so listing a folder never loads
+ * {@link File} entities or their associations.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileSummary {
+    private Long id;
+    private String originalFileName;
+    private String fileType;
+    private Long fileSize;
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package com.securefile.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,7 +12,9 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "folders")
+@Table(name = "folders", indexes = {
+        @Index(name = "idx_folders_user_path", columnList = "user_id, path")
+})
 public class Folder {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,15 +23,28 @@ public class Folder {
     @Column(nullable = false)
     private String name;
 
+    // Lazy associations stay out of JSON: responses are written after the transaction has ended
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_folder_id")
     private Folder parentFolder;
 
-    @OneToMany(mappedBy = "folder", cascade = CascadeType.ALL, orphanRemoval = true)
+    // Materialized path of folder ids from the root down to and including this folder, e.g. "/3/17/42/".
+    // Ids never change, so renames leave it alone; moves rewrite the whole subtree's prefix.
+    @Column(length = 760)
+    private String path;
+
+    // Number of ancestors; 0 for a top-level folder
+    private Integer depth;
+
+    // Read-only side of File.folder; files are moved or deleted explicitly by FolderService
+    @JsonIgnore
+    @OneToMany(mappedBy = "folder")
     private List<File> files;
 
     @Column(name = "created_at")
@@ -37,6 +53,11 @@ public class Folder {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Reading the id does not initialize the proxy
+    public Long getParentFolderId() {
+        return parentFolder != null ? parentFolder.getId() : null;
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
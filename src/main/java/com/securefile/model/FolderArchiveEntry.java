@@ -0,0 +1,40 @@
+package com.securefile.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What the ZIP export needs to locate and decrypt one file, selected directly so that archiving a
+ * large folder never loads {@link File} entities into the persistence context.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderArchiveEntry {
+    private Long id;
+    private Long folderId;
+    private String originalFileName;
+    private String fileType;
+    private Long fileSize;
+    private String storageKey;
+    private String filePath;
+    private EncryptionFormat encryptionFormat;
+    private CompressionCodec compression;
+    // Null for files stored before the CRC was recorded
+    private Long plaintextCrc32;
+
+    // Detached stand-in carrying only the fields FileService reads when decrypting
+    public File toFile() {
+        File file = new File();
+        file.setId(id);
+        file.setOriginalFileName(originalFileName);
+        file.setFileType(fileType);
+        file.setFileSize(fileSize);
+        file.setStorageKey(storageKey);
+        file.setFilePath(filePath);
+        file.setEncryptionFormat(encryptionFormat);
+        file.setCompression(compression);
+        return file;
+    }
+}
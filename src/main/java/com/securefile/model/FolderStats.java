@@ -0,0 +1,16 @@
+package com.securefile.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * File count and total size of a folder and everything beneath it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FolderStats {
+    private long fileCount;
+    private long totalSize;
+}
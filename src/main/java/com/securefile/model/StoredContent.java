@@ -0,0 +1,17 @@
+package com.securefile.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Encrypted content that has just been written under a fresh storage key and is waiting for a
+ * blob reference; see {@code BlobService.saveWithReferences}.
+ */
+@Data
+@AllArgsConstructor
+public class StoredContent {
+    private String contentHash;
+    private long plaintextCrc32;
+    private String storageKey;
+    private CompressionCodec compression;
+}
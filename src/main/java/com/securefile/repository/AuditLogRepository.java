@@ -1,11 +1,36 @@
 package com.securefile.repository;
 
 import com.securefile.model.AuditLog;
+import com.securefile.model.AuditLogSummary;
 import com.securefile.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     List<AuditLog> findByUserOrderByCreatedAtDesc(User user);
-    List<AuditLog> findAllByOrderByCreatedAtDesc();
-} 
\ No newline at end of file
+
+    // Keyset page, newest first: rows strictly after the (cursorCreatedAt, cursorId) seek position
+    @Query("SELECT new com.securefile.model.AuditLogSummary(a.id, u.id, u.username, a.action, a.details, a.ipAddress, a.createdAt) " +
+           "FROM AuditLog a LEFT JOIN a.user u " +
+           "WHERE (:userId IS NULL OR a.user.id = :userId) " +
+           "AND (:action IS NULL OR a.action = :action) " +
+           "AND (:ipAddress IS NULL OR a.ipAddress = :ipAddress) " +
+           "AND (:from IS NULL OR a.createdAt >= :from) " +
+           "AND (:to IS NULL OR a.createdAt < :to) " +
+           "AND (:cursorCreatedAt IS NULL OR a.createdAt < :cursorCreatedAt " +
+           "     OR (a.createdAt = :cursorCreatedAt AND a.id < :cursorId)) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<AuditLogSummary> findPage(@Param("userId") Long userId,
+                                   @Param("action") String action,
+                                   @Param("ipAddress") String ipAddress,
+                                   @Param("from") LocalDateTime from,
+                                   @Param("to") LocalDateTime to,
+                                   @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt,
+                                   @Param("cursorId") Long cursorId,
+                                   Pageable limit);
+}
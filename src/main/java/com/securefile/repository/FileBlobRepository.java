@@ -0,0 +1,57 @@
+package com.securefile.repository;
+
+import com.securefile.model.FileBlob;
+import com.securefile.model.User;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface FileBlobRepository extends JpaRepository<FileBlob, Long> {
+    Optional<FileBlob> findByContentHash(String contentHash);
+
+    // Blobs still pointing at an absolute path, for StorageMigrationService
+    @Query("select b from FileBlob b where b.storageKey is null and b.id > :afterId order by b.id")
+    List<FileBlob> findUnmigrated(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("update FileBlob b set b.storageKey = :key, b.storagePath = null where b.id = :id and b.storageKey is null")
+    int assignStorageKey(@Param("id") Long id, @Param("key") String key);
+
+    // Only live blobs can gain references; a blob at zero is being removed
+    @Transactional
+    @Modifying
+    @Query("update FileBlob b set b.referenceCount = b.referenceCount + 1 where b.contentHash = :hash and b.referenceCount > 0")
+    int incrementReferences(@Param("hash") String contentHash);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from FileBlob b where b.id = :id")
+    Optional<FileBlob> findByIdForUpdate(@Param("id") Long id);
+
+    // Drops the references held by the user's files in a folder subtree, in one statement. Must match
+    // the rows FileRepository.deleteSubtreeFiles removes, or a surviving file loses its reference
+    @Modifying
+    @Query("update FileBlob b set b.referenceCount = b.referenceCount - " +
+           "(select count(f) from File f join f.folder d where f.blob = b and f.user = :user " +
+           "and d.user = :user and d.path like concat(:path, '%')) " +
+           "where b.id in (select f2.blob.id from File f2 join f2.folder d2 where f2.user = :user " +
+           "and d2.user = :user and d2.path like concat(:path, '%'))")
+    int releaseSubtreeReferences(@Param("user") User user, @Param("path") String path);
+
+    @Query("select b.id from FileBlob b where b.referenceCount <= 0")
+    List<Long> findUnreferencedIds(Pageable pageable);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from FileBlob b where b.id in :ids and b.referenceCount <= 0")
+    List<FileBlob> findUnreferencedForUpdate(@Param("ids") List<Long> ids);
+
+    @Query("select b.id from FileBlob b where b.contentHash = :hash and b.referenceCount <= 0")
+    Optional<Long> findUnreferencedIdByContentHash(@Param("hash") String contentHash);
+}
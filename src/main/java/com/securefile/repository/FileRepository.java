@@ -1,12 +1,83 @@
 package com.securefile.repository;
 
 import com.securefile.model.File;
+import com.securefile.model.FileSummary;
+import com.securefile.model.FolderArchiveEntry;
 import com.securefile.model.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface FileRepository extends JpaRepository<File, Long> {
     List<File> findByUser(User user);
     List<File> findByUserOrderByCreatedAtDesc(User user);
     List<File> findByFolder(com.securefile.model.Folder folder);
-} 
\ No newline at end of file
+
+    @Query(value = "SELECT new com.securefile.model.FileSummary(f.id, f.originalFileName, f.fileType, f.fileSize, f.createdAt) " +
+                   "FROM File f WHERE f.user = :user AND f.folder.id = :folderId",
+           countQuery = "SELECT COUNT(f) FROM File f WHERE f.user = :user AND f.folder.id = :folderId")
+    Page<FileSummary> findSummariesByUserAndFolderId(@Param("user") User user, @Param("folderId") Long folderId, Pageable pageable);
+
+    @Query(value = "SELECT new com.securefile.model.FileSummary(f.id, f.originalFileName, f.fileType, f.fileSize, f.createdAt) " +
+                   "FROM File f WHERE f.user = :user AND f.folder IS NULL",
+           countQuery = "SELECT COUNT(f) FROM File f WHERE f.user = :user AND f.folder IS NULL")
+    Page<FileSummary> findRootSummariesByUser(@Param("user") User user, Pageable pageable);
+
+    // Bulk operations over every file in a folder subtree (see Folder.path)
+
+    @Modifying
+    @Query("UPDATE File f SET f.folder = null, f.updatedAt = :now WHERE f.user = :user AND f.folder.id IN " +
+           "(SELECT d.id FROM Folder d WHERE d.user = :user AND d.path LIKE CONCAT(:path, '%'))")
+    int moveSubtreeFilesToRoot(@Param("user") User user, @Param("path") String path, @Param("now") LocalDateTime now);
+
+    // Files stored before content-addressed storage own their content outright
+    @Query("SELECT f.storageKey FROM File f JOIN f.folder d WHERE f.blob IS NULL AND f.storageKey IS NOT NULL " +
+           "AND f.user = :user AND d.user = :user AND d.path LIKE CONCAT(:path, '%')")
+    List<String> findUnsharedKeysInSubtree(@Param("user") User user, @Param("path") String path);
+
+    @Query("SELECT f.filePath FROM File f JOIN f.folder d WHERE f.blob IS NULL AND f.storageKey IS NULL " +
+           "AND f.user = :user AND d.user = :user AND d.path LIKE CONCAT(:path, '%')")
+    List<String> findUnsharedLegacyPathsInSubtree(@Param("user") User user, @Param("path") String path);
+
+    // Every file in the subtree for the ZIP export, paged by id
+    @Query("SELECT new com.securefile.model.FolderArchiveEntry(f.id, d.id, f.originalFileName, f.fileType, f.fileSize, " +
+           "f.storageKey, f.filePath, f.encryptionFormat, f.compression, b.plaintextCrc32) " +
+           "FROM File f JOIN f.folder d LEFT JOIN f.blob b " +
+           "WHERE d.user = :user AND d.path LIKE CONCAT(:path, '%') AND f.id > :afterId ORDER BY f.id")
+    List<FolderArchiveEntry> findArchiveEntries(@Param("user") User user, @Param("path") String path,
+                                                @Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.contentHash = (SELECT b.contentHash FROM FileBlob b WHERE b = f.blob) " +
+           "WHERE f.contentHash IS NULL AND f.blob IS NOT NULL")
+    int backfillContentHashes();
+
+    // Rows still pointing at an absolute path, for StorageMigrationService
+    @Query("SELECT f FROM File f WHERE f.blob IS NULL AND f.storageKey IS NULL AND f.id > :afterId ORDER BY f.id")
+    List<File> findUnmigrated(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE File f SET f.storageKey = :key, f.filePath = null WHERE f.id = :id AND f.storageKey IS NULL")
+    int assignStorageKey(@Param("id") Long id, @Param("key") String key);
+
+    @Modifying
+    @Query("UPDATE File f SET f.storageKey = :key, f.filePath = null WHERE f.blob.id = :blobId")
+    int assignBlobStorageKey(@Param("blobId") Long blobId, @Param("key") String key);
+
+    @Modifying
+    @Query("DELETE FROM File f WHERE f.user = :user AND f.folder.id IN " +
+           "(SELECT d.id FROM Folder d WHERE d.user = :user AND d.path LIKE CONCAT(:path, '%'))")
+    int deleteSubtreeFiles(@Param("user") User user, @Param("path") String path);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE File f SET f.folder = null, f.updatedAt = :now WHERE f.folder = :folder")
+    int moveFolderFilesToRoot(@Param("folder") com.securefile.model.Folder folder, @Param("now") LocalDateTime now);
+}
@@ -1,11 +1,54 @@
 package com.securefile.repository;
 
 import com.securefile.model.Folder;
+import com.securefile.model.FolderStats;
 import com.securefile.model.User;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 
 public interface FolderRepository extends JpaRepository<Folder, Long> {
     List<Folder> findByUser(User user);
     List<Folder> findByUserAndParentFolder(User user, Folder parentFolder);
-} 
\ No newline at end of file
+
+    // Prefix scans on (user_id, path); paths only contain digits and '/', so no LIKE escaping is needed
+    @Query("SELECT f FROM Folder f WHERE f.user = :user AND f.path LIKE CONCAT(:path, '%') AND f.path <> :path " +
+           "ORDER BY f.depth, f.name")
+    List<Folder> findDescendants(@Param("user") User user, @Param("path") String path);
+
+    @Query("SELECT f FROM Folder f WHERE f.id IN :ids ORDER BY f.depth")
+    List<Folder> findAncestors(@Param("ids") List<Long> ids);
+
+    // Rows are locked in id order, so moves that lock overlapping sets cannot deadlock on each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM Folder f WHERE f.id IN :ids ORDER BY f.id")
+    List<Folder> findAllForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.securefile.model.FolderStats(COUNT(fi), COALESCE(SUM(fi.fileSize), 0)) " +
+           "FROM File fi JOIN fi.folder f WHERE f.user = :user AND f.path LIKE CONCAT(:path, '%')")
+    FolderStats findSubtreeStats(@Param("user") User user, @Param("path") String path);
+
+    // Re-roots a subtree: every path starting with oldPath has that prefix replaced by newPath
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Folder f SET f.path = CONCAT(:newPath, SUBSTRING(f.path, LENGTH(:oldPath) + 1)), " +
+           "f.depth = f.depth + :depthDelta WHERE f.user = :user AND f.path LIKE CONCAT(:oldPath, '%')")
+    int movePaths(@Param("user") User user, @Param("oldPath") String oldPath, @Param("newPath") String newPath,
+                  @Param("depthDelta") int depthDelta);
+
+    @Query("SELECT f FROM Folder f LEFT JOIN FETCH f.parentFolder WHERE f.path IS NULL")
+    List<Folder> findByPathIsNull();
+
+    // Detaches the subtree from itself first so the rows can be deleted in any order
+    @Modifying
+    @Query("UPDATE Folder f SET f.parentFolder = null WHERE f.user = :user AND f.path LIKE CONCAT(:path, '%')")
+    int detachSubtree(@Param("user") User user, @Param("path") String path);
+
+    @Modifying
+    @Query("DELETE FROM Folder f WHERE f.user = :user AND f.path LIKE CONCAT(:path, '%')")
+    int deleteSubtree(@Param("user") User user, @Param("path") String path);
+}
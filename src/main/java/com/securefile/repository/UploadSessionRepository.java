@@ -0,0 +1,32 @@
+package com.securefile.repository;
+
+import com.securefile.model.UploadSession;
+import com.securefile.model.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    List<UploadSession> findByUpdatedAtBefore(LocalDateTime cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("update UploadSession s set s.updatedAt = :now where s.id = :id")
+    int touch(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UploadSession s where s.id = :id")
+    int deleteSession(@Param("id") String id);
+
+    // Pending uploads into a deleted subtree are redirected to the root
+    @Modifying
+    @Query("update UploadSession s set s.folder = null where s.user = :user and s.folder.id in " +
+           "(select d.id from Folder d where d.user = :user and d.path like concat(:path, '%'))")
+    int moveSubtreeSessionsToRoot(@Param("user") User user, @Param("path") String path);
+}
@@ -1,27 +1,98 @@
 package com.securefile.security;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.securefile.model.User;
 import com.securefile.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 @RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
+    private static final Logger logger = LoggerFactory.getLogger(CustomUserDetailsService.class);
 
     private final UserRepository userRepository;
 
+    @Value("${security.user-cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${security.user-cache.ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    // Misses load on their own virtual thread instead of inside the cache's compute, which holds a
+    // monitor and would pin a virtual caller for the length of the query
+    private final ExecutorService loader = Executors.newVirtualThreadPerTaskExecutor();
+
+    private AsyncCache<String, UserDetails> userCache;
+    private CacheStats lastLogged = CacheStats.empty();
+
+    @PostConstruct
+    public void init() {
+        userCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .executor(loader)
+                .buildAsync();
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+        UserDetails cached;
+        try {
+            cached = userCache.get(username, (key, executor) ->
+                    CompletableFuture.supplyAsync(() -> loadFromDatabase(key), executor)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        // Hand out a copy: the authentication manager erases credentials on the instance it is given
+        return org.springframework.security.core.userdetails.User.withUserDetails(cached).build();
+    }
 
+    @EventListener
+    public void onUserAccountChanged(UserAccountChangedEvent event) {
+        userCache.synchronous().invalidate(event.getUsername());
+    }
+
+    public CacheStats getCacheStats() {
+        return userCache.synchronous().stats();
+    }
+
+    @Scheduled(fixedDelayString = "${security.user-cache.stats-interval-ms:300000}")
+    public void logCacheStats() {
+        CacheStats current = getCacheStats();
+        CacheStats recent = current.minus(lastLogged);
+        lastLogged = current;
+        if (recent.requestCount() > 0) {
+            logger.info("User cache: {} hits, {} misses, hit ratio {}, {} evictions",
+                    recent.hitCount(), recent.missCount(), String.format("%.3f", recent.hitRate()),
+                    recent.evictionCount());
+        }
+    }
+
+    public static UserDetails toUserDetails(User user) {
         return new org.springframework.security.core.userdetails.User(
                 user.getUsername(),
                 user.getPassword(),
@@ -32,4 +103,11 @@ public class CustomUserDetailsService implements UserDetailsService {
                 Collections.singletonList(new SimpleGrantedAuthority(user.getRole().name()))
         );
     }
-} 
\ No newline at end of file
+
+    private UserDetails loadFromDatabase(String username) {
+        logger.debug("User details cache miss for {}", username);
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+        return toUserDetails(user);
+    }
+}
@@ -0,0 +1,14 @@
+package com.securefile.security;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Published whenever a user's credentials or lock state change, so cached
+ * {@link org.springframework.security.core.userdetails.UserDetails} can be dropped.
+ */
+@Getter
+@RequiredArgsConstructor
+public class UserAccountChangedEvent {
+    private final String username;
+}
@@ -0,0 +1,417 @@
+package com.securefile.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.securefile.model.AuditLogFilter;
+import com.securefile.model.AuditLogSummary;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps {@code audit_logs} small by rolling rows older than the hot retention window out into
+ * append-only, gzip-compressed NDJSON segment files, one directory per day:
+ * {@code <archive-dir>/<yyyy-MM-dd>/segment-<firstId>-<lastId>.ndjson.gz}.
+ * A segment is sealed (renamed into place) before its rows are deleted from the table, and the id
+ * range in the file name lets an interrupted rollover resume without archiving a row twice.
+ * A restored day is pinned in the table by a {@code restored-until} marker in its directory.
+ */
+@Service
+@RequiredArgsConstructor
+public class AuditArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(AuditArchiveService.class);
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)-(\\d+)\\.ndjson\\.gz");
+    private static final String RESTORE_PIN = "restored-until";
+
+    private static final String RESTORE_SQL =
+            "INSERT INTO audit_logs (id, user_id, action, details, ip_address, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Serializes rollover and restore; a lock rather than synchronized so virtual threads doing I/O are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Value("${audit.archive.dir:./audit-archive}")
+    private String archiveDir;
+
+    @Value("${audit.archive.enabled:true}")
+    private boolean enabled;
+
+    // Rows created before the start of (today - hot-retention-days) are moved out of the table
+    @Value("${audit.archive.hot-retention-days:30}")
+    private int hotRetentionDays;
+
+    @Value("${audit.archive.segment-max-rows:100000}")
+    private int segmentMaxRows;
+
+    @Value("${audit.archive.batch-size:5000}")
+    private int batchSize;
+
+    // Days a restored day stays in the table before rollover may archive it again
+    @Value("${audit.archive.restore-pin-days:7}")
+    private int restorePinDays;
+
+    @Scheduled(fixedDelayString = "${audit.archive.rollover-interval-ms:3600000}")
+    public void scheduledRollover() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rollover();
+        } catch (Exception e) {
+            logger.error("Audit log rollover failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Archives every day that has fallen out of the hot window, oldest first.
+     *
+     * @return number of rows moved out of the table
+     */
+    public long rollover() throws IOException {
+        lock.lock();
+        try {
+            return doRollover();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long doRollover() throws IOException {
+        LocalDate cutoff = LocalDate.now().minusDays(hotRetentionDays);
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM audit_logs WHERE created_at < ?", Timestamp.class,
+                Timestamp.valueOf(cutoff.atStartOfDay()));
+        long archived = 0;
+        if (oldest == null) {
+            return archived;
+        }
+        for (LocalDate day = oldest.toLocalDateTime().toLocalDate(); day.isBefore(cutoff); day = day.plusDays(1)) {
+            if (!isPinned(day)) {
+                archived += archiveDay(day);
+            }
+        }
+        if (archived > 0) {
+            logger.info("Archived {} audit log rows older than {}", archived, cutoff);
+        }
+        return archived;
+    }
+
+    public List<Map<String, Object>> listSegments() throws IOException {
+        List<Map<String, Object>> segments = new ArrayList<>();
+        for (LocalDate day : archivedDays()) {
+            for (Path segment : segmentsOf(day)) {
+                Matcher name = SEGMENT_NAME.matcher(segment.getFileName().toString());
+                name.matches();
+                segments.add(Map.of(
+                        "day", day.toString(),
+                        "firstId", Long.parseLong(name.group(1)),
+                        "lastId", Long.parseLong(name.group(2)),
+                        "compressedSize", Files.size(segment)));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Streams archived rows matching {@code filter} as NDJSON, oldest first. Only the day
+     * directories overlapping the filter's time range are opened.
+     */
+    public void query(AuditLogFilter filter, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        for (LocalDate day : archivedDays()) {
+            if (filter.getFrom() != null && !day.plusDays(1).atStartOfDay().isAfter(filter.getFrom())) {
+                continue;
+            }
+            if (filter.getTo() != null && !day.atStartOfDay().isBefore(filter.getTo())) {
+                continue;
+            }
+            for (Path segment : segmentsOf(day)) {
+                try (BufferedReader reader = openSegment(segment)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        AuditLogSummary row = objectMapper.readValue(line, AuditLogSummary.class);
+                        if (matches(filter, row)) {
+                            writer.write(line);
+                            writer.write('\n');
+                        }
+                    }
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Copies a day's archived rows back into {@code audit_logs} and removes its segments. Rollover
+     * leaves the day in the table for {@code audit.archive.restore-pin-days}, then archives it again.
+     *
+     * @return number of rows restored
+     */
+    public long restore(LocalDate day) throws IOException {
+        lock.lock();
+        try {
+            return doRestore(day);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long doRestore(LocalDate day) throws IOException {
+        List<Path> segments = segmentsOf(day);
+        if (segments.isEmpty()) {
+            throw new RuntimeException("No archived audit logs for " + day);
+        }
+        // Pinned before any row goes back, so a rollover after a partial restore leaves the day alone
+        LocalDate pinnedUntil = LocalDate.now().plusDays(restorePinDays);
+        Files.writeString(dayDirectory(day).resolve(RESTORE_PIN), pinnedUntil.toString());
+        long restored = 0;
+        for (Path segment : segments) {
+            // One transaction per segment, inserted a batch at a time as the file is read
+            Long rows = transactionTemplate.execute(status -> {
+                try {
+                    return restoreSegment(segment);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            // Rows are back in the table; drop the segment so the next rollover does not skip them
+            Files.delete(segment);
+            restored += rows;
+        }
+        logger.info("Restored {} audit log rows for {}, kept in the table until {}", restored, day, pinnedUntil);
+        return restored;
+    }
+
+    private long restoreSegment(Path segment) throws IOException {
+        long restored = 0;
+        List<AuditLogSummary> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = openSegment(segment)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.add(objectMapper.readValue(line, AuditLogSummary.class));
+                if (batch.size() == batchSize) {
+                    insertBatch(batch);
+                    restored += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            insertBatch(batch);
+            restored += batch.size();
+        }
+        return restored;
+    }
+
+    // Removes an expired pin, so the day can be archived again
+    private boolean isPinned(LocalDate day) throws IOException {
+        Path pin = dayDirectory(day).resolve(RESTORE_PIN);
+        if (!Files.exists(pin)) {
+            return false;
+        }
+        if (LocalDate.now().isBefore(LocalDate.parse(Files.readString(pin).trim()))) {
+            return true;
+        }
+        Files.delete(pin);
+        return false;
+    }
+
+    private long archiveDay(LocalDate day) throws IOException {
+        Timestamp dayStart = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp dayEnd = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        Path directory = dayDirectory(day);
+        Files.createDirectories(directory);
+
+        // Rows already sealed into a segment by an interrupted run only need deleting
+        long lastArchivedId = lastSealedId(directory);
+        if (lastArchivedId > 0) {
+            deleteArchived(dayStart, dayEnd, 0, lastArchivedId);
+        }
+
+        long archived = 0;
+        while (true) {
+            long written = writeSegment(directory, dayStart, dayEnd, lastArchivedId);
+            if (written == 0) {
+                break;
+            }
+            archived += written;
+            lastArchivedId = lastSealedId(directory);
+        }
+        if (lastArchivedId == 0) {
+            // Nothing was logged that day
+            Files.delete(directory);
+        }
+        return archived;
+    }
+
+    // Writes one segment of up to segmentMaxRows rows with id > afterId, seals it and trims the table
+    private long writeSegment(Path directory, Timestamp dayStart, Timestamp dayEnd, long afterId) throws IOException {
+        Path temp = Files.createTempFile(directory, "segment-", ".tmp");
+        long firstId = -1;
+        long lastId = afterId;
+        long rows = 0;
+        try {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024), StandardCharsets.UTF_8))) {
+                while (rows < segmentMaxRows) {
+                    int limit = (int) Math.min(batchSize, segmentMaxRows - rows);
+                    List<AuditLogSummary> batch = jdbcTemplate.query(
+                            AuditService.EXPORT_SQL +
+                            " WHERE a.created_at >= ? AND a.created_at < ? AND a.id > ? ORDER BY a.id LIMIT ?",
+                            (rs, rowNum) -> AuditService.mapRow(rs), dayStart, dayEnd, lastId, limit);
+                    for (AuditLogSummary row : batch) {
+                        writer.write(objectMapper.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                    if (!batch.isEmpty()) {
+                        if (firstId < 0) {
+                            firstId = batch.get(0).getId();
+                        }
+                        lastId = batch.get(batch.size() - 1).getId();
+                        rows += batch.size();
+                    }
+                    if (batch.size() < limit) {
+                        break;
+                    }
+                }
+            }
+            if (rows == 0) {
+                Files.delete(temp);
+                return 0;
+            }
+            Files.move(temp, directory.resolve("segment-" + firstId + "-" + lastId + ".ndjson.gz"),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        deleteArchived(dayStart, dayEnd, firstId, lastId);
+        return rows;
+    }
+
+    private void deleteArchived(Timestamp dayStart, Timestamp dayEnd, long firstId, long lastId) {
+        jdbcTemplate.update("DELETE FROM audit_logs WHERE created_at >= ? AND created_at < ? AND id BETWEEN ? AND ?",
+                dayStart, dayEnd, firstId, lastId);
+    }
+
+    private long lastSealedId(Path directory) throws IOException {
+        long last = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path segment : (Iterable<Path>) files::iterator) {
+                Matcher name = SEGMENT_NAME.matcher(segment.getFileName().toString());
+                if (name.matches()) {
+                    last = Math.max(last, Long.parseLong(name.group(2)));
+                }
+            }
+        }
+        return last;
+    }
+
+    private void insertBatch(List<AuditLogSummary> rows) {
+        jdbcTemplate.batchUpdate(RESTORE_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, row.getId());
+            if (row.getUserId() != null) {
+                ps.setLong(2, row.getUserId());
+            } else {
+                ps.setNull(2, Types.BIGINT);
+            }
+            ps.setString(3, row.getAction());
+            ps.setString(4, row.getDetails());
+            ps.setString(5, row.getIpAddress());
+            ps.setTimestamp(6, row.getCreatedAt() != null ? Timestamp.valueOf(row.getCreatedAt()) : null);
+        });
+    }
+
+    private static boolean matches(AuditLogFilter filter, AuditLogSummary row) {
+        LocalDateTime createdAt = row.getCreatedAt();
+        return (filter.getUserId() == null || filter.getUserId().equals(row.getUserId()))
+                && (filter.getAction() == null || filter.getAction().equals(row.getAction()))
+                && (filter.getIpAddress() == null || filter.getIpAddress().equals(row.getIpAddress()))
+                && (filter.getFrom() == null || (createdAt != null && !createdAt.isBefore(filter.getFrom())))
+                && (filter.getTo() == null || (createdAt != null && createdAt.isBefore(filter.getTo())));
+    }
+
+    private List<LocalDate> archivedDays() throws IOException {
+        Path root = Paths.get(archiveDir);
+        List<LocalDate> days = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return days;
+        }
+        try (Stream<Path> directories = Files.list(root)) {
+            directories.filter(Files::isDirectory).forEach(directory -> {
+                try {
+                    days.add(LocalDate.parse(directory.getFileName().toString()));
+                } catch (RuntimeException ignored) {
+                    // Not a day partition
+                }
+            });
+        }
+        days.sort(null);
+        return days;
+    }
+
+    // Sealed segments of a day, in id order
+    private List<Path> segmentsOf(LocalDate day) throws IOException {
+        Path directory = dayDirectory(day);
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+                    .forEach(segments::add);
+        }
+        segments.sort((a, b) -> Long.compare(firstId(a), firstId(b)));
+        return segments;
+    }
+
+    private static long firstId(Path segment) {
+        Matcher name = SEGMENT_NAME.matcher(segment.getFileName().toString());
+        name.matches();
+        return Long.parseLong(name.group(1));
+    }
+
+    private Path dayDirectory(LocalDate day) {
+        return Paths.get(archiveDir).resolve(day.toString());
+    }
+
+    private static BufferedReader openSegment(Path segment) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(segment), 64 * 1024), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,190 @@
+package com.securefile.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves audit inserts off the request path. Events are queued in memory and written by a
+ * single background thread in JDBC batches, once a batch fills or the flush interval elapses.
+ */
+@Component
+@RequiredArgsConstructor
+public class AuditLogWriter {
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogWriter.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_logs (user_id, action, details, ip_address, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    public enum OverflowPolicy {
+        /** Wait for space in the queue. */
+        BLOCK,
+        /** Discard the event and count it. */
+        DROP,
+        /** Insert the event on the calling thread. */
+        CALLER_RUNS
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${audit.writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${audit.writer.batch-size:200}")
+    private int batchSize;
+
+    @Value("${audit.writer.flush-interval-ms:500}")
+    private long flushIntervalMs;
+
+    @Value("${audit.writer.overflow-policy:CALLER_RUNS}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${audit.writer.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private BlockingQueue<AuditEvent> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        worker = new Thread(this::run, "audit-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            worker.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            logger.warn("Audit writer did not finish within {} ms; {} events not written", shutdownTimeoutMs, queue.size());
+        }
+    }
+
+    public void submit(Long userId, String action, String details, String ipAddress) {
+        AuditEvent event = new AuditEvent(userId, action, details, ipAddress, LocalDateTime.now());
+        if (!running) {
+            write(List.of(event));
+            return;
+        }
+        if (queue.offer(event)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case BLOCK -> {
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    droppedEvents.incrementAndGet();
+                }
+            }
+            case DROP -> {
+                long dropped = droppedEvents.incrementAndGet();
+                if (dropped % 1000 == 1) {
+                    logger.warn("Audit queue full, {} events dropped so far", dropped);
+                }
+            }
+            case CALLER_RUNS -> write(List.of(event));
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    private void run() {
+        List<AuditEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                // Keep draining; shutdown is signalled through the running flag
+                Thread.interrupted();
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Collects up to batchSize events, returning early once the flush interval has passed
+    private void fillBatch(List<AuditEvent> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            AuditEvent event = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (event == null) {
+                return;
+            }
+            batch.add(event);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void write(List<AuditEvent> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                if (event.userId != null) {
+                    ps.setLong(1, event.userId);
+                } else {
+                    ps.setNull(1, Types.BIGINT);
+                }
+                ps.setString(2, event.action);
+                ps.setString(3, event.details);
+                ps.setString(4, event.ipAddress);
+                ps.setTimestamp(5, Timestamp.valueOf(event.createdAt));
+            });
+        } catch (Exception e) {
+            droppedEvents.addAndGet(batch.size());
+            logger.error("Failed to write {} audit events: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    private static final class AuditEvent {
+        private final Long userId;
+        private final String action;
+        private final String details;
+        private final String ipAddress;
+        private final LocalDateTime createdAt;
+
+        private AuditEvent(Long userId, String action, String details, String ipAddress, LocalDateTime createdAt) {
+            this.userId = userId;
+            this.action = action;
+            this.details = details;
+            this.ipAddress = ipAddress;
+            this.createdAt = createdAt;
+        }
+    }
+}
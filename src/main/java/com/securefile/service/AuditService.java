@@ -1,35 +1,212 @@
 package com.securefile.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.securefile.model.AuditLog;
+import com.securefile.model.AuditLogFilter;
+import com.securefile.model.AuditLogPage;
+import com.securefile.model.AuditLogSummary;
 import com.securefile.model.User;
 import com.securefile.repository.AuditLogRepository;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class AuditService {
 
+    public static final int MAX_PAGE_SIZE = 500;
+
+    static final String EXPORT_SQL =
+            "SELECT a.id, a.user_id, u.username, a.action, a.details, a.ip_address, a.created_at " +
+            "FROM audit_logs a LEFT JOIN users u ON u.id = a.user_id";
+
     private final AuditLogRepository auditLogRepository;
+    private final AuditLogWriter auditLogWriter;
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+
+    // Integer.MIN_VALUE makes MySQL Connector/J stream rows one at a time instead of buffering the result
+    @Value("${audit.export.fetch-size:-2147483648}")
+    private int exportFetchSize;
+
+    private JdbcTemplate exportTemplate;
+
+    @PostConstruct
+    public void init() {
+        exportTemplate = new JdbcTemplate(dataSource);
+        exportTemplate.setFetchSize(exportFetchSize);
+    }
 
     public void logEvent(User user, String action, String details, HttpServletRequest request) {
-        AuditLog auditLog = new AuditLog();
-        auditLog.setUser(user);
-        auditLog.setAction(action);
-        auditLog.setDetails(details);
-        auditLog.setIpAddress(getClientIP(request));
-        auditLogRepository.save(auditLog);
+        auditLogWriter.submit(user != null ? user.getId() : null, action, details, getClientIP(request));
     }
 
     public List<AuditLog> getUserAuditLogs(User user) {
         return auditLogRepository.findByUserOrderByCreatedAtDesc(user);
     }
 
-    public List<AuditLog> getAllAuditLogs() {
-        return auditLogRepository.findAllByOrderByCreatedAtDesc();
+    public AuditLogPage getAuditLogPage(AuditLogFilter filter, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        LocalDateTime cursorCreatedAt = null;
+        Long cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                String[] position = decodeCursor(cursor);
+                cursorCreatedAt = LocalDateTime.parse(position[0]);
+                cursorId = Long.parseLong(position[1]);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+
+        // Fetch one extra row to learn whether another page follows
+        List<AuditLogSummary> rows = auditLogRepository.findPage(
+                filter.getUserId(), filter.getAction(), filter.getIpAddress(), filter.getFrom(), filter.getTo(),
+                cursorCreatedAt, cursorId, PageRequest.of(0, pageSize + 1));
+        if (rows.size() <= pageSize) {
+            return new AuditLogPage(rows, null);
+        }
+        List<AuditLogSummary> items = new ArrayList<>(rows.subList(0, pageSize));
+        AuditLogSummary last = items.get(pageSize - 1);
+        return new AuditLogPage(items, encodeCursor(last.getCreatedAt(), last.getId()));
+    }
+
+    /**
+     * Writes every matching row, newest first, as NDJSON or CSV. Rows are read from a
+     * forward-only cursor and written as they arrive, so memory use does not grow with the table.
+     */
+    public void exportAuditLogs(AuditLogFilter filter, String format, OutputStream out) throws IOException {
+        boolean csv = "csv".equalsIgnoreCase(format);
+        List<Object> args = new ArrayList<>();
+        String sql = EXPORT_SQL + whereClause(filter, args) + " ORDER BY a.created_at DESC, a.id DESC";
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (csv) {
+            writer.write("id,user_id,username,action,details,ip_address,created_at\n");
+        }
+        try {
+            exportTemplate.query(sql, rs -> {
+                AuditLogSummary row = mapRow(rs);
+                try {
+                    if (csv) {
+                        writeCsv(writer, row);
+                    } else {
+                        writer.write(objectMapper.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, args.toArray());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private static String whereClause(AuditLogFilter filter, List<Object> args) {
+        StringBuilder where = new StringBuilder();
+        if (filter.getUserId() != null) {
+            appendCondition(where, "a.user_id = ?");
+            args.add(filter.getUserId());
+        }
+        if (filter.getAction() != null) {
+            appendCondition(where, "a.action = ?");
+            args.add(filter.getAction());
+        }
+        if (filter.getIpAddress() != null) {
+            appendCondition(where, "a.ip_address = ?");
+            args.add(filter.getIpAddress());
+        }
+        if (filter.getFrom() != null) {
+            appendCondition(where, "a.created_at >= ?");
+            args.add(Timestamp.valueOf(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            appendCondition(where, "a.created_at < ?");
+            args.add(Timestamp.valueOf(filter.getTo()));
+        }
+        return where.toString();
+    }
+
+    private static void appendCondition(StringBuilder where, String condition) {
+        where.append(where.length() == 0 ? " WHERE " : " AND ").append(condition);
+    }
+
+    static AuditLogSummary mapRow(ResultSet rs) throws SQLException {
+        long userId = rs.getLong("user_id");
+        boolean anonymous = rs.wasNull();
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        return new AuditLogSummary(
+                rs.getLong("id"),
+                anonymous ? null : userId,
+                rs.getString("username"),
+                rs.getString("action"),
+                rs.getString("details"),
+                rs.getString("ip_address"),
+                createdAt != null ? createdAt.toLocalDateTime() : null);
+    }
+
+    private static void writeCsv(Writer writer, AuditLogSummary row) throws IOException {
+        writer.write(String.valueOf(row.getId()));
+        writer.write(',');
+        writer.write(row.getUserId() != null ? String.valueOf(row.getUserId()) : "");
+        writer.write(',');
+        writer.write(csvField(row.getUsername()));
+        writer.write(',');
+        writer.write(csvField(row.getAction()));
+        writer.write(',');
+        writer.write(csvField(row.getDetails()));
+        writer.write(',');
+        writer.write(csvField(row.getIpAddress()));
+        writer.write(',');
+        writer.write(row.getCreatedAt() != null ? row.getCreatedAt().toString() : "");
+        writer.write('\n');
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String encodeCursor(LocalDateTime createdAt, Long id) {
+        String position = createdAt + "," + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = position.split(",", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return parts;
     }
 
     private String getClientIP(HttpServletRequest request) {
@@ -39,4 +216,4 @@ public class AuditService {
         }
         return xfHeader.split(",")[0];
     }
-} 
\ No newline at end of file
+}
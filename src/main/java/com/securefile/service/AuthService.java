@@ -3,14 +3,16 @@ package com.securefile.service;
 import com.securefile.model.Role;
 import com.securefile.model.User;
 import com.securefile.repository.UserRepository;
+import com.securefile.security.CustomUserDetailsService;
 import com.securefile.security.JwtService;
+import com.securefile.security.UserAccountChangedEvent;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -25,7 +27,7 @@ public class AuthService {
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
     private final AuditService auditService;
-    private final UserDetailsService userDetailsService;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final int MAX_FAILED_ATTEMPTS = 3;
     private static final long LOCK_TIME_DURATION = 15; // minutes
@@ -48,9 +50,10 @@ public class AuthService {
         user.setFailedAttempt(0);
 
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccountChangedEvent(username));
         auditService.logEvent(user, "REGISTER", "User registered successfully", request);
         
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        UserDetails userDetails = CustomUserDetailsService.toUserDetails(user);
         return jwtService.generateToken(userDetails);
     }
 
@@ -64,6 +67,7 @@ public class AuthService {
                 user.setFailedAttempt(0);
                 user.setLockTime(null);
                 userRepository.save(user);
+                eventPublisher.publishEvent(new UserAccountChangedEvent(username));
             } else {
                 throw new RuntimeException("Account is locked. Please try again later.");
             }
@@ -75,10 +79,14 @@ public class AuthService {
             );
             
             if (authentication.isAuthenticated()) {
+                boolean hadFailedAttempts = user.getFailedAttempt() != 0;
                 user.setFailedAttempt(0);
                 userRepository.save(user);
+                if (hadFailedAttempts) {
+                    eventPublisher.publishEvent(new UserAccountChangedEvent(username));
+                }
                 auditService.logEvent(user, "LOGIN", "User logged in successfully", request);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = CustomUserDetailsService.toUserDetails(user);
                 return jwtService.generateToken(userDetails);
             }
         } catch (Exception e) {
@@ -86,10 +94,12 @@ public class AuthService {
                 if (user.getFailedAttempt() < MAX_FAILED_ATTEMPTS - 1) {
                     user.setFailedAttempt(user.getFailedAttempt() + 1);
                     userRepository.save(user);
+                    eventPublisher.publishEvent(new UserAccountChangedEvent(username));
                 } else {
                     user.setAccountNonLocked(false);
                     user.setLockTime(LocalDateTime.now());
                     userRepository.save(user);
+                    eventPublisher.publishEvent(new UserAccountChangedEvent(username));
                     throw new RuntimeException("Account is locked due to 3 failed attempts");
                 }
             }
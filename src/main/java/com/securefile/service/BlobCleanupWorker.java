@@ -0,0 +1,115 @@
+package com.securefile.service;
+
+import com.securefile.repository.FileBlobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes stored files in the background after bulk deletes: blobs whose reference count has
+ * dropped to zero, and files that belonged to a single deleted {@link com.securefile.model.File}.
+ * Runs on request and also periodically, which picks up anything left behind by a restart.
+ */
+@Component
+@RequiredArgsConstructor
+public class BlobCleanupWorker {
+    private static final Logger logger = LoggerFactory.getLogger(BlobCleanupWorker.class);
+
+    private final FileBlobRepository fileBlobRepository;
+    private final BlobService blobService;
+
+    @Value("${blob.cleanup.batch-size:500}")
+    private int batchSize;
+
+    private final Queue<String> pendingKeys = new ConcurrentLinkedQueue<>();
+    private final Queue<String> pendingLegacyPaths = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean cleanupQueued = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "blob-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void deleteLater(Collection<String> storageKeys, Collection<String> legacyPaths) {
+        pendingKeys.addAll(storageKeys);
+        pendingLegacyPaths.addAll(legacyPaths);
+    }
+
+    // Coalesces requests: at most one sweep is waiting to run at a time
+    public void requestCleanup() {
+        if (cleanupQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                cleanupQueued.set(false);
+                sweep();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${blob.cleanup.interval-ms:60000}")
+    public void scheduledCleanup() {
+        requestCleanup();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void sweep() {
+        int files = 0;
+        int blobs = 0;
+        try {
+            String key;
+            while ((key = pendingKeys.poll()) != null) {
+                if (deleteStored(key, null)) {
+                    files++;
+                }
+            }
+            String path;
+            while ((path = pendingLegacyPaths.poll()) != null) {
+                if (deleteStored(null, path)) {
+                    files++;
+                }
+            }
+            while (true) {
+                List<Long> ids = fileBlobRepository.findUnreferencedIds(PageRequest.of(0, batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                int purged = blobService.purgeUnreferenced(ids);
+                blobs += purged;
+                if (ids.size() < batchSize || purged == 0) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Blob cleanup failed: {}", e.getMessage(), e);
+        }
+        if (files > 0 || blobs > 0) {
+            logger.info("Cleaned up {} unreferenced blobs and {} files", blobs, files);
+        }
+    }
+
+    private boolean deleteStored(String storageKey, String legacyPath) {
+        try {
+            blobService.deleteStored(storageKey, legacyPath);
+            return true;
+        } catch (Exception e) {
+            logger.warn("Could not delete {}: {}", storageKey != null ? storageKey : legacyPath, e.getMessage());
+            return false;
+        }
+    }
+}
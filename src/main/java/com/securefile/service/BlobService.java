@@ -0,0 +1,229 @@
+package com.securefile.service;
+
+import com.securefile.model.CompressionCodec;
+import com.securefile.model.FileBlob;
+import com.securefile.model.StoredContent;
+import com.securefile.repository.FileBlobRepository;
+import com.securefile.storage.BlockCache;
+import com.securefile.storage.StorageBackend;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Content-addressed store for encrypted files. Each distinct plaintext is stored once and shared
+ * by every {@code File} row with the same SHA-256; the blob is removed with its last reference.
+ */
+@Service
+@RequiredArgsConstructor
+public class BlobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobService.class);
+
+    private final FileBlobRepository fileBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StorageBackend storageBackend;
+    private final RenditionStore renditionStore;
+    private final BlockCache blockCache;
+
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String hash(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return toHex(digest);
+    }
+
+    public String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Takes a reference on the blob for each piece of stored content and runs {@code save}, which
+     * inserts the rows holding those references, all in one transaction. Content not seen before
+     * becomes a new blob; content that turns out to be a duplicate is deleted from storage after the
+     * commit. If anything fails, nothing is referenced and all of the new content is deleted.
+     */
+    public <T> T saveWithReferences(List<StoredContent> contents, Function<List<FileBlob>, T> save) throws IOException {
+        List<Long> storedSizes = new ArrayList<>();
+        for (StoredContent content : contents) {
+            storedSizes.add(storageBackend.size(content.getStorageKey()));
+        }
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return saveAndDropDuplicates(contents, storedSizes, save);
+                } catch (DuplicateContentException e) {
+                    // Another upload registered the same content first, or a dead blob waiting for the
+                    // cleanup worker still holds the hash; purge it and try once more
+                    if (attempt > 0) {
+                        throw new RuntimeException("Concurrent upload of identical content, please retry");
+                    }
+                    Optional<Long> dead = fileBlobRepository.findUnreferencedIdByContentHash(e.contentHash);
+                    if (dead.isPresent()) {
+                        purgeIfUnreferenced(dead.get());
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (StoredContent content : contents) {
+                deleteQuietly(content.getStorageKey());
+            }
+            throw e;
+        }
+    }
+
+    private <T> T saveAndDropDuplicates(List<StoredContent> contents, List<Long> storedSizes,
+                                        Function<List<FileBlob>, T> save) {
+        List<FileBlob> blobs = new ArrayList<>();
+        T saved = transactionTemplate.execute(status -> {
+            for (int i = 0; i < contents.size(); i++) {
+                blobs.add(reference(contents.get(i), storedSizes.get(i)));
+            }
+            return save.apply(blobs);
+        });
+        for (int i = 0; i < contents.size(); i++) {
+            String storageKey = contents.get(i).getStorageKey();
+            if (!storageKey.equals(blobs.get(i).getStorageKey())) {
+                deleteQuietly(storageKey);
+            }
+        }
+        return saved;
+    }
+
+    // Joins the caller's transaction: an existing live blob gains a reference, otherwise one is inserted
+    private FileBlob reference(StoredContent content, long storedSize) {
+        if (fileBlobRepository.incrementReferences(content.getContentHash()) > 0) {
+            return fileBlobRepository.findByContentHash(content.getContentHash()).orElseThrow();
+        }
+        try {
+            return fileBlobRepository.saveAndFlush(newBlob(content.getContentHash(), content.getPlaintextCrc32(),
+                    content.getStorageKey(), storedSize, content.getCompression()));
+        } catch (DataIntegrityViolationException e) {
+            throw new DuplicateContentException(content.getContentHash());
+        }
+    }
+
+    private void deleteQuietly(String storageKey) {
+        try {
+            storageBackend.delete(storageKey);
+        } catch (IOException e) {
+            logger.warn("Could not delete stored object {}: {}", storageKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops one reference and deletes the blob once nothing refers to it. The count is changed
+     * under a row lock so a concurrent {@link #acquire} cannot revive a blob that is being removed.
+     */
+    public void release(FileBlob blob) throws IOException {
+        FileBlob orphaned = transactionTemplate.execute(status -> {
+            FileBlob locked = fileBlobRepository.findByIdForUpdate(blob.getId()).orElse(null);
+            if (locked == null) {
+                return null;
+            }
+            locked.setReferenceCount(locked.getReferenceCount() - 1);
+            if (locked.getReferenceCount() > 0) {
+                return null;
+            }
+            fileBlobRepository.delete(locked);
+            return locked;
+        });
+        if (orphaned != null) {
+            deleteStored(orphaned.getStorageKey(), orphaned.getStoragePath());
+            renditionStore.remove(orphaned.getContentHash());
+            logger.debug("Removed unreferenced blob {}", blob.getId());
+        }
+    }
+
+    /**
+     * Deletes a blob whose reference count has already dropped to zero (for example by a bulk
+     * folder delete). Returns false if the blob is gone or has references again.
+     */
+    public boolean purgeIfUnreferenced(Long blobId) throws IOException {
+        return purgeUnreferenced(List.of(blobId)) > 0;
+    }
+
+    /**
+     * Batch form of {@link #purgeIfUnreferenced}: rows are locked and deleted in one transaction,
+     * then their files are removed. Returns the number of blobs deleted.
+     */
+    public int purgeUnreferenced(List<Long> blobIds) throws IOException {
+        List<FileBlob> orphaned = transactionTemplate.execute(status -> {
+            List<FileBlob> locked = fileBlobRepository.findUnreferencedForUpdate(blobIds);
+            fileBlobRepository.deleteAllInBatch(locked);
+            return locked;
+        });
+        for (FileBlob blob : orphaned) {
+            deleteStored(blob.getStorageKey(), blob.getStoragePath());
+            renditionStore.remove(blob.getContentHash());
+        }
+        return orphaned.size();
+    }
+
+    // Content written before storage keys is still at its old absolute path until migrated
+    public void deleteStored(String storageKey, String legacyPath) throws IOException {
+        if (storageKey != null) {
+            // The size bounds the blocks to invalidate; an object that is already gone has none worth dropping
+            long storedSize;
+            try {
+                storedSize = storageBackend.size(storageKey);
+            } catch (NoSuchFileException e) {
+                storedSize = 0;
+            }
+            storageBackend.delete(storageKey);
+            blockCache.invalidate(storageKey, storedSize);
+        } else if (legacyPath != null) {
+            Files.deleteIfExists(Paths.get(legacyPath));
+        }
+    }
+
+    private static final class DuplicateContentException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final String contentHash;
+
+        DuplicateContentException(String contentHash) {
+            super("Content " + contentHash + " is already registered");
+            this.contentHash = contentHash;
+        }
+    }
+
+    private static FileBlob newBlob(String contentHash, long plaintextCrc32, String storageKey, long storedSize,
+                                    CompressionCodec compression) {
+        FileBlob blob = new FileBlob();
+        blob.setContentHash(contentHash);
+        blob.setPlaintextCrc32(plaintextCrc32);
+        blob.setCompression(compression);
+        blob.setStorageKey(storageKey);
+        blob.setStoredSize(storedSize);
+        blob.setReferenceCount(1);
+        return blob;
+    }
+}
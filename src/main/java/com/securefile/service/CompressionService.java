@@ -0,0 +1,110 @@
+package com.securefile.service;
+
+import com.securefile.model.CompressionCodec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterOutputStream;
+
+/**
+ * Optional compression stage of the upload pipeline. It runs on the plaintext before encryption
+ * (ciphertext does not compress) and is only used for content that is likely to shrink.
+ */
+@Service
+public class CompressionService {
+
+    @Value("${file.compression.enabled:true}")
+    private boolean enabled;
+
+    @Value("${file.compression.level:6}")
+    private int level;
+
+    // Container formats that are already compressed internally, such as OOXML documents and PDFs
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "docx", "xlsx", "pptx", "odt", "ods", "odp", "pdf", "epub",
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar", "zst", "jar",
+            "jpg", "jpeg", "png", "gif", "webp", "heic", "avif",
+            "mp3", "mp4", "m4a", "aac", "ogg", "webm", "mkv", "mov", "avi", "flac");
+
+    private static final Set<String> TEXT_EXTENSIONS = Set.of(
+            "txt", "csv", "tsv", "log", "json", "ndjson", "xml", "html", "htm", "md",
+            "yaml", "yml", "js", "css", "sql", "svg", "ini", "properties", "conf", "rtf");
+
+    private static final Set<String> TEXT_CONTENT_TYPES = Set.of(
+            "application/json", "application/x-ndjson", "application/xml", "application/javascript",
+            "application/sql", "application/x-yaml", "application/yaml", "application/rtf",
+            "application/csv", "image/svg+xml");
+
+    public CompressionCodec selectCodec(String contentType, String fileName) {
+        if (!enabled) {
+            return CompressionCodec.NONE;
+        }
+        String extension = extension(fileName);
+        if (COMPRESSED_EXTENSIONS.contains(extension)) {
+            return CompressionCodec.NONE;
+        }
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT).split(";")[0].trim();
+        if (type.startsWith("text/") || TEXT_CONTENT_TYPES.contains(type) || TEXT_EXTENSIONS.contains(extension)) {
+            return CompressionCodec.DEFLATE;
+        }
+        return CompressionCodec.NONE;
+    }
+
+    /**
+     * Wraps {@code in} so that reading it yields the encoded form. Closing the returned stream
+     * closes {@code in}.
+     */
+    public InputStream compress(CompressionCodec codec, InputStream in) {
+        if (codec != CompressionCodec.DEFLATE) {
+            return in;
+        }
+        Deflater deflater = new Deflater(level);
+        return new DeflaterInputStream(in, deflater, 64 * 1024) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps {@code out} so that encoded bytes written to it are decoded on the fly. Closing the
+     * returned stream flushes the remaining output but leaves {@code out} open.
+     */
+    public OutputStream decompress(CompressionCodec codec, OutputStream out) {
+        if (codec != CompressionCodec.DEFLATE) {
+            throw new IllegalArgumentException("Unsupported compression codec: " + codec);
+        }
+        Inflater inflater = new Inflater();
+        return new InflaterOutputStream(out, inflater, 64 * 1024) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    finish();
+                    flush();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static String extension(String fileName) {
+        if (fileName == null || fileName.lastIndexOf('.') < 0) {
+            return "";
+        }
+        return fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,66 +1,603 @@
 package com.securefile.service;
 
+import com.securefile.metrics.TransferMetrics;
+import com.securefile.model.EncryptionFormat;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
-import java.util.Base64;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * AES engine for stored files. The master key, {@code SecureRandom} and keyed HMAC are set up once,
+ * and {@code Cipher}/{@code Mac} instances are pooled, so the per-call cost is the cipher work itself.
+ * New data is always written in the {@link EncryptionFormat#GCM_SEGMENTED} format (AES/GCM runs on
+ * AES-NI and CLMUL); the legacy CBC format is only read.
+ */
 @Service
+@RequiredArgsConstructor
 public class EncryptionService {
 
+    private final MeterRegistry meterRegistry;
+
     @Value("${encryption.key}")
     private String encryptionKey;
 
+    @Value("${encryption.pool-size:64}")
+    private int poolSize = 64;
+
+    // Worker threads for encrypting or decrypting the segments of one large file in parallel
+    @Value("${encryption.parallelism:0}")
+    private int parallelism;
+
+    // Files below this size stay on the calling thread
+    @Value("${encryption.parallel-threshold:8388608}")
+    private long parallelThreshold = 8 * 1024 * 1024;
+
     private static final String ALGORITHM = "AES/CBC/PKCS5Padding";
-    private static final int KEY_SIZE = 256;
+    private static final int FRAME_SIZE = 64 * 1024;
+
+    /*
+     * Segmented format: a 32 byte header (magic, version, segment size, key salt, nonce prefix)
+     * followed by AES/GCM segments of SEGMENT_SIZE plaintext bytes plus a 16 byte tag each. Every
+     * segment uses its own nonce (prefix + segment index + last-segment flag), so any segment can be
+     * located and authenticated on its own, and truncation or reordering fails the tag check.
+     */
+    private static final String SEGMENT_ALGORITHM = "AES/GCM/NoPadding";
+    private static final byte[] SEGMENT_MAGIC = {'S', 'F', 'S', 'G'};
+    private static final byte SEGMENT_VERSION = 1;
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final int HEADER_SIZE = 32;
+    private static final int SALT_SIZE = 16;
+    private static final int NONCE_PREFIX_SIZE = 7;
+    private static final int NONCE_SIZE = 12;
+    private static final int TAG_SIZE = 16;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+    private SecretKey masterKey;
+    private InstancePool<Cipher> segmentCiphers;
+    private InstancePool<Cipher> legacyCiphers;
+    private InstancePool<Mac> keyDerivationMacs;
+    private ForkJoinPool cryptoPool;
+    private CryptoMeters encryptMeters;
+    private CryptoMeters decryptMeters;
+
+    @PostConstruct
+    public void init() {
+        masterKey = generateKey();
+        segmentCiphers = new InstancePool<>(() -> Cipher.getInstance(SEGMENT_ALGORITHM), poolSize);
+        legacyCiphers = new InstancePool<>(() -> Cipher.getInstance(ALGORITHM), poolSize);
+        keyDerivationMacs = new InstancePool<>(() -> {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(masterKey);
+            return mac;
+        }, poolSize);
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        cryptoPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("crypto-worker-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        encryptMeters = new CryptoMeters("encrypt");
+        decryptMeters = new CryptoMeters("decrypt");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cryptoPool.shutdown();
+    }
 
     public byte[] encrypt(byte[] data) throws Exception {
-        SecretKey key = generateKey();
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        byte[] iv = generateIV();
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, ivSpec);
-        
-        byte[] encryptedData = cipher.doFinal(data);
-        byte[] combined = new byte[iv.length + encryptedData.length];
-        System.arraycopy(iv, 0, combined, 0, iv.length);
-        System.arraycopy(encryptedData, 0, combined, iv.length, encryptedData.length);
-        
-        return combined;
+        byte[] encrypted = new byte[Math.toIntExact(encryptedSize(data.length))];
+        encrypt(ByteBuffer.wrap(data), ByteBuffer.wrap(encrypted));
+        return encrypted;
     }
 
     public byte[] decrypt(byte[] encryptedData) throws Exception {
-        SecretKey key = generateKey();
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-        
-        byte[] iv = new byte[16];
-        System.arraycopy(encryptedData, 0, iv, 0, iv.length);
-        IvParameterSpec ivSpec = new IvParameterSpec(iv);
-        
-        byte[] data = new byte[encryptedData.length - iv.length];
-        System.arraycopy(encryptedData, iv.length, data, 0, data.length);
-        
-        cipher.init(Cipher.DECRYPT_MODE, key, ivSpec);
-        return cipher.doFinal(data);
-    }
-
-    private SecretKey generateKey() throws Exception {
-        byte[] keyBytes = encryptionKey.getBytes("UTF-8");
+        byte[] data = new byte[Math.toIntExact(plaintextSize(encryptedData.length))];
+        decrypt(ByteBuffer.wrap(encryptedData), ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Encrypts the remaining bytes of {@code plaintext} into {@code ciphertext}, which needs
+     * {@link #encryptedSize} bytes of room. Works on heap or direct buffers without extra copies.
+     * Returns the number of bytes written.
+     */
+    public int encrypt(ByteBuffer plaintext, ByteBuffer ciphertext) throws Exception {
+        int start = ciphertext.position();
+        byte[] header = newSegmentHeader();
+        ciphertext.put(header);
+        SecretKey key = deriveSegmentKey(header);
+        Cipher cipher = segmentCiphers.borrow();
+        try {
+            int end = plaintext.limit();
+            long segment = 0;
+            do {
+                int segmentEnd = Math.min(end, plaintext.position() + SEGMENT_SIZE);
+                boolean last = segmentEnd == end;
+                cipher.init(Cipher.ENCRYPT_MODE, key, segmentNonce(header, segment++, last));
+                cipher.doFinal(plaintext.limit(segmentEnd), ciphertext);
+                plaintext.limit(end);
+            } while (plaintext.hasRemaining());
+        } finally {
+            segmentCiphers.release(cipher);
+        }
+        return ciphertext.position() - start;
+    }
+
+    /**
+     * Decrypts a complete segmented ciphertext held in {@code ciphertext} into {@code plaintext}.
+     * Returns the number of plaintext bytes written.
+     */
+    public int decrypt(ByteBuffer ciphertext, ByteBuffer plaintext) throws Exception {
+        int start = plaintext.position();
+        byte[] header = new byte[HEADER_SIZE];
+        ciphertext.get(header);
+        int segmentSize = readSegmentHeader(header);
+        int encryptedSegmentSize = segmentSize + TAG_SIZE;
+        SecretKey key = deriveSegmentKey(header);
+        Cipher cipher = segmentCiphers.borrow();
+        try {
+            int end = ciphertext.limit();
+            long segment = 0;
+            do {
+                int segmentEnd = Math.min(end, ciphertext.position() + encryptedSegmentSize);
+                boolean last = segmentEnd == end;
+                cipher.init(Cipher.DECRYPT_MODE, key, segmentNonce(header, segment++, last));
+                cipher.doFinal(ciphertext.limit(segmentEnd), plaintext);
+                ciphertext.limit(end);
+            } while (ciphertext.hasRemaining());
+        } finally {
+            segmentCiphers.release(cipher);
+        }
+        return plaintext.position() - start;
+    }
+
+    public long encryptedSize(long plaintextSize) {
+        long segments = Math.max(1, (plaintextSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        return HEADER_SIZE + plaintextSize + segments * TAG_SIZE;
+    }
+
+    public long plaintextSize(long encryptedSize) {
+        long encryptedSegmentSize = SEGMENT_SIZE + TAG_SIZE;
+        long segments = Math.max(1, (encryptedSize - HEADER_SIZE + encryptedSegmentSize - 1) / encryptedSegmentSize);
+        return encryptedSize - HEADER_SIZE - segments * TAG_SIZE;
+    }
+
+    /**
+     * Encrypts a stream into the {@link EncryptionFormat#GCM_SEGMENTED} format. Heap use is bounded
+     * by two segment buffers regardless of the input size. Returns the number of plaintext bytes.
+     */
+    public long encrypt(InputStream in, OutputStream out) throws Exception {
+        return encrypt(in, out, -1);
+    }
+
+    /**
+     * As {@link #encrypt(InputStream, OutputStream)}; a {@code sizeHint} at or above
+     * {@code encryption.parallel-threshold} spreads the segments over the crypto worker pool.
+     */
+    public long encrypt(InputStream in, OutputStream out, long sizeHint) throws Exception {
+        byte[] header = newSegmentHeader();
+        out.write(header);
+        return encryptSegments(header, 0, true, in, out, sizeHint);
+    }
+
+    /**
+     * Encrypts a run of segments for the file described by {@code header}, numbering them from
+     * {@code firstSegment}. Runs encrypted independently can be concatenated after the header; only
+     * the run with {@code finalRun} set marks its last segment as the end of the file, and every
+     * other run must contain whole segments.
+     */
+    public long encryptSegments(byte[] header, long firstSegment, boolean finalRun,
+                                InputStream in, OutputStream out, long sizeHint) throws Exception {
+        long start = System.nanoTime();
+        long total = useParallel(sizeHint)
+                ? encryptSegmentsParallel(header, firstSegment, finalRun, in, out)
+                : encryptSegmentsSerial(header, firstSegment, finalRun, in, out);
+        encryptMeters.record(total, System.nanoTime() - start);
+        return total;
+    }
+
+    private long encryptSegmentsSerial(byte[] header, long firstSegment, boolean finalRun,
+                                       InputStream in, OutputStream out) throws Exception {
+        SecretKey key = deriveSegmentKey(header);
+        Cipher cipher = segmentCiphers.borrow();
+        try {
+            byte[] current = new byte[SEGMENT_SIZE];
+            byte[] next = new byte[SEGMENT_SIZE];
+            byte[] encrypted = new byte[SEGMENT_SIZE + TAG_SIZE];
+            int currentLength = in.readNBytes(current, 0, SEGMENT_SIZE);
+            long total = 0;
+            long segment = firstSegment;
+            while (true) {
+                int nextLength = currentLength == SEGMENT_SIZE ? in.readNBytes(next, 0, SEGMENT_SIZE) : 0;
+                boolean last = nextLength == 0;
+                if (last && !finalRun && currentLength < SEGMENT_SIZE) {
+                    throw new IllegalArgumentException("Only the final run may end with a partial segment");
+                }
+                cipher.init(Cipher.ENCRYPT_MODE, key, segmentNonce(header, segment, last && finalRun));
+                int written = cipher.doFinal(current, 0, currentLength, encrypted, 0);
+                out.write(encrypted, 0, written);
+                total += currentLength;
+                if (last) {
+                    return total;
+                }
+                byte[] swap = current;
+                current = next;
+                next = swap;
+                currentLength = nextLength;
+                segment++;
+            }
+        } finally {
+            segmentCiphers.release(cipher);
+        }
+    }
+
+    /*
+     * Reads a window of segments, encrypts them on the worker pool and writes them out in order.
+     * One extra segment is read ahead so a file that ends on a segment boundary still flags its
+     * final segment; memory is bounded by the window, not the file.
+     */
+    private long encryptSegmentsParallel(byte[] header, long firstSegment, boolean finalRun,
+                                         InputStream in, OutputStream out) throws Exception {
+        SecretKey key = deriveSegmentKey(header);
+        int window = parallelism * 2;
+        byte[][] plain = new byte[window + 1][SEGMENT_SIZE];
+        int[] plainLengths = new int[window + 1];
+        byte[][] encrypted = new byte[window][SEGMENT_SIZE + TAG_SIZE];
+        int[] encryptedLengths = new int[window];
+        long total = 0;
+        long segment = firstSegment;
+        int count = 0;
+        while (true) {
+            boolean end = false;
+            while (count <= window) {
+                int read = in.readNBytes(plain[count], 0, SEGMENT_SIZE);
+                plainLengths[count] = read;
+                if (read < SEGMENT_SIZE) {
+                    end = true;
+                    if (read > 0 || count == 0) {
+                        count++;
+                    }
+                    break;
+                }
+                count++;
+            }
+            int batch = end ? count : window;
+            if (end && !finalRun && plainLengths[batch - 1] < SEGMENT_SIZE) {
+                throw new IllegalArgumentException("Only the final run may end with a partial segment");
+            }
+
+            long base = segment;
+            boolean flagLast = end && finalRun;
+            runParallel(batch, i -> {
+                Cipher cipher = segmentCiphers.borrow();
+                try {
+                    cipher.init(Cipher.ENCRYPT_MODE, key, segmentNonce(header, base + i, flagLast && i == batch - 1));
+                    encryptedLengths[i] = cipher.doFinal(plain[i], 0, plainLengths[i], encrypted[i], 0);
+                } finally {
+                    segmentCiphers.release(cipher);
+                }
+            });
+            for (int i = 0; i < batch; i++) {
+                out.write(encrypted[i], 0, encryptedLengths[i]);
+                total += plainLengths[i];
+            }
+            if (end) {
+                return total;
+            }
+            segment += batch;
+
+            // Carry the read-ahead segment into the next window
+            byte[] swap = plain[0];
+            plain[0] = plain[window];
+            plain[window] = swap;
+            plainLengths[0] = plainLengths[window];
+            count = 1;
+        }
+    }
+
+    public byte[] newSegmentHeader() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(SEGMENT_MAGIC).put(SEGMENT_VERSION).putInt(SEGMENT_SIZE);
+        byte[] random = new byte[SALT_SIZE + NONCE_PREFIX_SIZE];
+        secureRandom.nextBytes(random);
+        header.put(random);
+        return header.array();
+    }
+
+    public int getSegmentSize() {
+        return SEGMENT_SIZE;
+    }
+
+    /**
+     * Decrypts {@code length} plaintext bytes starting at {@code offset} from a stored file.
+     * {@code in} must be positioned at the start of the stored data; only the segments (or CBC
+     * blocks) covering the range are read and decrypted. {@code storedLength} is the size of the
+     * stored data and is used to locate the final segment.
+     */
+    public void decrypt(EncryptionFormat format, InputStream in, long storedLength,
+                        long offset, long length, OutputStream out) throws Exception {
+        if (length <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (format == EncryptionFormat.GCM_SEGMENTED) {
+            decryptSegments(in, storedLength, offset, length, out);
+        } else {
+            decryptCbc(in, offset, length, out);
+        }
+        decryptMeters.record(length, System.nanoTime() - start);
+    }
+
+    private void decryptSegments(InputStream in, long storedLength, long offset, long length,
+                                 OutputStream out) throws Exception {
+        byte[] header = in.readNBytes(HEADER_SIZE);
+        int segmentSize = readSegmentHeader(header);
+        int encryptedSegmentSize = segmentSize + TAG_SIZE;
+        long segmentCount = Math.max(1, (storedLength - HEADER_SIZE + encryptedSegmentSize - 1) / encryptedSegmentSize);
+
+        SecretKey key = deriveSegmentKey(header);
+        long firstSegment = offset / segmentSize;
+        long lastSegment = Math.min((offset + length - 1) / segmentSize, segmentCount - 1);
+        in.skipNBytes(firstSegment * encryptedSegmentSize);
+        if (useParallel((lastSegment - firstSegment + 1) * segmentSize)) {
+            decryptSegmentsParallel(in, header, key, segmentSize, segmentCount, firstSegment, lastSegment,
+                    offset, length, out);
+            return;
+        }
+
+        Cipher cipher = segmentCiphers.borrow();
+        try {
+            byte[] encrypted = new byte[encryptedSegmentSize];
+            byte[] plain = new byte[segmentSize];
+            for (long segment = firstSegment; segment <= lastSegment; segment++) {
+                boolean last = segment == segmentCount - 1;
+                int encryptedLength = in.readNBytes(encrypted, 0, encryptedSegmentSize);
+                if (encryptedLength < TAG_SIZE || (!last && encryptedLength < encryptedSegmentSize)) {
+                    throw new IOException("Encrypted data is truncated");
+                }
+                cipher.init(Cipher.DECRYPT_MODE, key, segmentNonce(header, segment, last));
+                int plainLength = cipher.doFinal(encrypted, 0, encryptedLength, plain, 0);
+
+                long segmentStart = segment * segmentSize;
+                int from = (int) Math.max(0, offset - segmentStart);
+                int to = (int) Math.min(plainLength, offset + length - segmentStart);
+                if (to > from) {
+                    out.write(plain, from, to - from);
+                }
+            }
+        } finally {
+            segmentCiphers.release(cipher);
+        }
+    }
+
+    private void decryptSegmentsParallel(InputStream in, byte[] header, SecretKey key, int segmentSize,
+                                         long segmentCount, long firstSegment, long lastSegment,
+                                         long offset, long length, OutputStream out) throws Exception {
+        int encryptedSegmentSize = segmentSize + TAG_SIZE;
+        int window = parallelism * 2;
+        byte[][] encrypted = new byte[window][encryptedSegmentSize];
+        int[] encryptedLengths = new int[window];
+        byte[][] plain = new byte[window][segmentSize];
+        int[] plainLengths = new int[window];
+
+        for (long base = firstSegment; base <= lastSegment; base += window) {
+            int batch = (int) Math.min(window, lastSegment - base + 1);
+            for (int i = 0; i < batch; i++) {
+                boolean last = base + i == segmentCount - 1;
+                encryptedLengths[i] = in.readNBytes(encrypted[i], 0, encryptedSegmentSize);
+                if (encryptedLengths[i] < TAG_SIZE || (!last && encryptedLengths[i] < encryptedSegmentSize)) {
+                    throw new IOException("Encrypted data is truncated");
+                }
+            }
+
+            long windowBase = base;
+            runParallel(batch, i -> {
+                Cipher cipher = segmentCiphers.borrow();
+                try {
+                    long segment = windowBase + i;
+                    cipher.init(Cipher.DECRYPT_MODE, key, segmentNonce(header, segment, segment == segmentCount - 1));
+                    plainLengths[i] = cipher.doFinal(encrypted[i], 0, encryptedLengths[i], plain[i], 0);
+                } finally {
+                    segmentCiphers.release(cipher);
+                }
+            });
+
+            for (int i = 0; i < batch; i++) {
+                long segmentStart = (base + i) * segmentSize;
+                int from = (int) Math.max(0, offset - segmentStart);
+                int to = (int) Math.min(plainLengths[i], offset + length - segmentStart);
+                if (to > from) {
+                    out.write(plain[i], from, to - from);
+                }
+            }
+        }
+    }
+
+    private boolean useParallel(long size) {
+        return parallelism > 1 && size >= parallelThreshold;
+    }
+
+    private interface SegmentJob {
+        void run(int index) throws Exception;
+    }
+
+    private void runParallel(int count, SegmentJob job) throws Exception {
+        try {
+            cryptoPool.invoke(new SegmentTask(job, 0, count));
+        } catch (SegmentFailure e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static final class SegmentFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SegmentFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    private static final class SegmentTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks only live inside one invoke() and are never serialized
+        private final transient SegmentJob job;
+        private final int from;
+        private final int to;
+
+        SegmentTask(SegmentJob job, int from, int to) {
+            this.job = job;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SegmentTask(job, from, middle), new SegmentTask(job, middle, to));
+                return;
+            }
+            try {
+                job.run(from);
+            } catch (Exception e) {
+                throw new SegmentFailure(e);
+            }
+        }
+    }
+
+    /*
+     * Streaming calls include the time spent reading the input and writing the output, as the
+     * cipher works in step with both; compare with upload and download to see which side is slow.
+     */
+    private final class CryptoMeters {
+        private final Timer timer;
+        private final DistributionSummary throughput;
+
+        CryptoMeters(String operation) {
+            timer = Timer.builder("securefile.crypto")
+                    .description("Streaming AES encryption and decryption of stored content")
+                    .tag("operation", operation)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            throughput = TransferMetrics.throughput("securefile.crypto.throughput")
+                    .description("Plaintext bytes per second through the cipher")
+                    .tag("operation", operation)
+                    .register(meterRegistry);
+        }
+
+        void record(long bytes, long nanos) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+            if (bytes > 0) {
+                throughput.record(TransferMetrics.bytesPerSecond(bytes, nanos));
+            }
+        }
+    }
+
+    // CBC decryption is random access: block n only needs ciphertext block n - 1 as its IV
+    private void decryptCbc(InputStream in, long offset, long length, OutputStream out) throws Exception {
+        long firstBlock = offset / 16;
+        byte[] iv = in.readNBytes(16);
+        if (firstBlock > 0) {
+            in.skipNBytes((firstBlock - 1) * 16);
+            iv = in.readNBytes(16);
+        }
+        if (iv.length != 16) {
+            throw new IllegalArgumentException("Encrypted data is truncated");
+        }
+
+        Cipher cipher = legacyCiphers.borrow();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, masterKey, new IvParameterSpec(iv));
+
+            long skip = offset - firstBlock * 16;
+            long remaining = length;
+            byte[] frame = new byte[FRAME_SIZE];
+            byte[] decryptedFrame = new byte[cipher.getOutputSize(FRAME_SIZE) + cipher.getBlockSize()];
+            int read;
+            while (remaining > 0 && (read = in.read(frame)) != -1) {
+                int written = cipher.update(frame, 0, read, decryptedFrame);
+                remaining -= writeSlice(decryptedFrame, written, skip, remaining, out);
+                skip = Math.max(0, skip - written);
+            }
+            if (remaining > 0) {
+                int written = cipher.doFinal(decryptedFrame, 0);
+                writeSlice(decryptedFrame, written, skip, remaining, out);
+            }
+        } finally {
+            legacyCiphers.release(cipher);
+        }
+    }
+
+    private static long writeSlice(byte[] buffer, int available, long skip, long remaining, OutputStream out)
+            throws IOException {
+        if (skip >= available) {
+            return 0;
+        }
+        int count = (int) Math.min(available - skip, remaining);
+        out.write(buffer, (int) skip, count);
+        return count;
+    }
+
+    private static int readSegmentHeader(byte[] header) {
+        if (header.length != HEADER_SIZE
+                || !Arrays.equals(header, 0, SEGMENT_MAGIC.length, SEGMENT_MAGIC, 0, SEGMENT_MAGIC.length)
+                || header[4] != SEGMENT_VERSION) {
+            throw new IllegalArgumentException("Not a segmented encrypted file");
+        }
+        return ByteBuffer.wrap(header, 5, 4).getInt();
+    }
+
+    // Each file gets its own AES key derived from the master key and the random salt in its header
+    private SecretKey deriveSegmentKey(byte[] header) throws Exception {
+        Mac mac = keyDerivationMacs.borrow();
+        try {
+            mac.update(header, 9, SALT_SIZE);
+            return new SecretKeySpec(mac.doFinal(), "AES");
+        } finally {
+            keyDerivationMacs.release(mac);
+        }
+    }
+
+    private static GCMParameterSpec segmentNonce(byte[] header, long segment, boolean last) {
+        byte[] nonce = new byte[NONCE_SIZE];
+        System.arraycopy(header, 9 + SALT_SIZE, nonce, 0, NONCE_PREFIX_SIZE);
+        ByteBuffer.wrap(nonce, NONCE_PREFIX_SIZE, 4).putInt(Math.toIntExact(segment));
+        nonce[NONCE_SIZE - 1] = (byte) (last ? 1 : 0);
+        return new GCMParameterSpec(TAG_SIZE * 8, nonce);
+    }
+
+    private SecretKey generateKey() {
+        byte[] keyBytes = encryptionKey.getBytes(StandardCharsets.UTF_8);
         // Ensure the key is 16, 24, or 32 bytes for AES
         byte[] key = new byte[32];
         System.arraycopy(keyBytes, 0, key, 0, Math.min(keyBytes.length, key.length));
         return new SecretKeySpec(key, "AES");
     }
-
-    private byte[] generateIV() {
-        byte[] iv = new byte[16];
-        new SecureRandom().nextBytes(iv);
-        return iv;
-    }
-} 
\ No newline at end of file
+}
@@ -1,30 +1,100 @@
 package com.securefile.service;
 
+import com.securefile.metrics.TransferMetrics;
+import com.securefile.model.BatchUploadResult;
+import com.securefile.model.CompressionCodec;
+import com.securefile.model.EncryptionFormat;
 import com.securefile.model.File;
+import com.securefile.model.FileBlob;
+import com.securefile.model.FileSummary;
+import com.securefile.model.StoredContent;
 import com.securefile.model.User;
 import com.securefile.repository.FileRepository;
+import com.securefile.storage.BlockCache;
+import com.securefile.storage.StorageBackend;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 @Service
 @RequiredArgsConstructor
 public class FileService {
+    private static final Logger logger = LoggerFactory.getLogger(FileService.class);
 
     private final FileRepository fileRepository;
     private final EncryptionService encryptionService;
+    private final BlobService blobService;
+    private final CompressionService compressionService;
+    private final StorageBackend storageBackend;
+    private final BlockCache blockCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransferMetrics transferMetrics;
 
-    @Value("${file.upload-dir}")
-    private String uploadDir;
+    // Files encrypted at once by batch uploads, across all requests
+    @Value("${file.batch-upload.concurrency:8}")
+    private int batchConcurrency;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private Semaphore batchPermits;
+    private ExecutorService batchExecutor;
+
+    @PostConstruct
+    public void init() {
+        batchPermits = new Semaphore(batchConcurrency);
+        batchExecutor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(batchConcurrency, runnable -> {
+                    Thread thread = new Thread(runnable, "batch-upload");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdown();
+    }
+
+    // Files that share a blob inherit its hash; rows saved before File carried it get it copied once
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillContentHashes() {
+        int updated = fileRepository.backfillContentHashes();
+        if (updated > 0) {
+            logger.info("Backfilled content hashes for {} files", updated);
+        }
+    }
 
     public File getFileById(Long fileId) {
         return fileRepository.findById(fileId)
@@ -32,112 +102,241 @@ public class FileService {
     }
 
     public File uploadFile(MultipartFile multipartFile, User user, com.securefile.model.Folder folder) throws IOException {
-        String originalFileName = multipartFile.getOriginalFilename();
-        String fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
-        String fileName = UUID.randomUUID().toString() + fileExtension;
-        
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        Path filePath = uploadPath.resolve(fileName);
-        byte[] fileContent = multipartFile.getBytes();
+        long start = System.nanoTime();
+        boolean success = false;
         try {
-            byte[] encryptedContent = encryptionService.encrypt(fileContent);
-            Files.write(filePath, encryptedContent);
-
-            File file = new File();
-            file.setFileName(fileName);
-            file.setOriginalFileName(originalFileName);
-            file.setFileType(multipartFile.getContentType());
-            file.setFileSize(multipartFile.getSize());
-            file.setFilePath(filePath.toString());
-            file.setUser(user);
-            file.setEncrypted(true);
-            file.setFolder(folder);
-
-            return fileRepository.save(file);
-        } catch (Exception e) {
-            // Clean up the file if encryption fails
-            Files.deleteIfExists(filePath);
-            throw new RuntimeException("Failed to encrypt file: " + e.getMessage());
+            StoredContent content = storeContent(multipartFile);
+            File file = saveFile(content, multipartFile.getOriginalFilename(), multipartFile.getContentType(),
+                    multipartFile.getSize(), user, folder);
+            success = true;
+            return file;
+        } finally {
+            transferMetrics.recordUpload("single", multipartFile.getSize(), System.nanoTime() - start, success);
         }
     }
 
-    public File uploadFile(MultipartFile multipartFile, User user) throws IOException {
-        String originalFileName = multipartFile.getOriginalFilename();
-        String fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
-        String fileName = UUID.randomUUID().toString() + fileExtension;
-        
-        Path uploadPath = Paths.get(uploadDir);
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
+    /**
+     * Uploads several files in one go. Content is hashed, encrypted and stored concurrently, at
+     * most {@code file.batch-upload.concurrency} files at a time, and the rows for every stored
+     * file are inserted, with their blob references, in a single transaction. Results are in request order; a file that fails
+     * is reported on its own without affecting the rest.
+     */
+    public List<BatchUploadResult> uploadFiles(List<MultipartFile> multipartFiles, User user,
+                                               com.securefile.model.Folder folder) {
+        List<Future<StoredContent>> stored = new ArrayList<>();
+        for (MultipartFile multipartFile : multipartFiles) {
+            if (multipartFile.getOriginalFilename() == null || multipartFile.getOriginalFilename().isBlank()) {
+                stored.add(CompletableFuture.failedFuture(new IllegalArgumentException("Missing file name")));
+                continue;
+            }
+            stored.add(batchExecutor.submit(() -> {
+                batchPermits.acquire();
+                long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    StoredContent content = storeContent(multipartFile);
+                    success = true;
+                    return content;
+                } finally {
+                    batchPermits.release();
+                    transferMetrics.recordUpload("batch", multipartFile.getSize(), System.nanoTime() - start, success);
+                }
+            }));
+        }
+
+        BatchUploadResult[] results = new BatchUploadResult[multipartFiles.size()];
+        List<StoredContent> contents = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < multipartFiles.size(); i++) {
+            MultipartFile multipartFile = multipartFiles.get(i);
+            try {
+                contents.add(stored.get(i).get());
+                positions.add(i);
+            } catch (ExecutionException e) {
+                results[i] = BatchUploadResult.failed(multipartFile.getOriginalFilename(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results[i] = BatchUploadResult.failed(multipartFile.getOriginalFilename(), "Upload interrupted");
+            }
         }
 
-        Path filePath = uploadPath.resolve(fileName);
-        byte[] fileContent = multipartFile.getBytes();
         try {
-            byte[] encryptedContent = encryptionService.encrypt(fileContent);
-            Files.write(filePath, encryptedContent);
-
-            File file = new File();
-            file.setFileName(fileName);
-            file.setOriginalFileName(originalFileName);
-            file.setFileType(multipartFile.getContentType());
-            file.setFileSize(multipartFile.getSize());
-            file.setFilePath(filePath.toString());
-            file.setUser(user);
-            file.setEncrypted(true);
-
-            return fileRepository.save(file);
+            List<File> saved = blobService.saveWithReferences(contents, blobs -> {
+                List<File> files = new ArrayList<>();
+                for (int i = 0; i < blobs.size(); i++) {
+                    MultipartFile multipartFile = multipartFiles.get(positions.get(i));
+                    files.add(newFile(blobs.get(i), multipartFile.getOriginalFilename(), multipartFile.getContentType(),
+                            multipartFile.getSize(), user, folder));
+                }
+                return fileRepository.saveAll(files);
+            });
+            for (int i = 0; i < saved.size(); i++) {
+                results[positions.get(i)] = BatchUploadResult.succeeded(saved.get(i));
+                eventPublisher.publishEvent(new FileStoredEvent(saved.get(i)));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Batch upload of {} files failed: {}", contents.size(), e.getMessage());
+            for (int position : positions) {
+                results[position] = BatchUploadResult.failed(multipartFiles.get(position).getOriginalFilename(),
+                        "Failed to save file");
+            }
+        }
+        return List.of(results);
+    }
+
+    // Hashes on the way through so the upload is read once; a duplicate is deleted again once the
+    // existing blob has been referenced
+    private StoredContent storeContent(MultipartFile multipartFile) throws IOException {
+        MessageDigest digest = blobService.newDigest();
+        CRC32 crc = new CRC32();
+        CompressionCodec codec = compressionService.selectCodec(multipartFile.getContentType(),
+                multipartFile.getOriginalFilename());
+        String storageKey = newStorageKey(multipartFile.getOriginalFilename());
+        try (InputStream source = new CheckedInputStream(
+                     new DigestInputStream(multipartFile.getInputStream(), digest), crc);
+             InputStream in = compressionService.compress(codec, source);
+             OutputStream out = storageBackend.openWrite(storageKey)) {
+            encryptionService.encrypt(in, out, multipartFile.getSize());
+            source.transferTo(OutputStream.nullOutputStream());
         } catch (Exception e) {
-            // Clean up the file if encryption fails
-            Files.deleteIfExists(filePath);
+            // Clean up the object if encryption fails
+            storageBackend.delete(storageKey);
             throw new RuntimeException("Failed to encrypt file: " + e.getMessage());
         }
+        return new StoredContent(blobService.toHex(digest), crc.getValue(), storageKey, codec);
     }
 
-    public byte[] downloadFile(Long fileId, User user) throws IOException {
+    public String newStorageKey(String originalFileName) {
+        int dot = originalFileName != null ? originalFileName.lastIndexOf('.') : -1;
+        String fileExtension = dot >= 0 ? originalFileName.substring(dot) : "";
+        return UUID.randomUUID().toString() + fileExtension;
+    }
+
+    /**
+     * Records a file that has already been stored under {@code storageKey} in the segmented
+     * format, deduplicating it against existing blobs with the same plaintext hash.
+     */
+    public File saveEncryptedFile(String storageKey, String contentHash, long plaintextCrc32, String originalFileName,
+                                  String fileType, long fileSize, User user, com.securefile.model.Folder folder)
+            throws IOException {
+        return saveFile(new StoredContent(contentHash, plaintextCrc32, storageKey, CompressionCodec.NONE),
+                originalFileName, fileType, fileSize, user, folder);
+    }
+
+    private File saveFile(StoredContent content, String originalFileName, String fileType, long fileSize,
+                          User user, com.securefile.model.Folder folder) throws IOException {
+        File file = blobService.saveWithReferences(List.of(content), blobs -> fileRepository.save(
+                newFile(blobs.get(0), originalFileName, fileType, fileSize, user, folder)));
+        eventPublisher.publishEvent(new FileStoredEvent(file));
+        return file;
+    }
+
+    private static File newFile(FileBlob blob, String originalFileName, String fileType, long fileSize,
+                                User user, com.securefile.model.Folder folder) {
+        File file = new File();
+        file.setFileName(blob.getStorageKey());
+        file.setOriginalFileName(originalFileName);
+        file.setFileType(fileType);
+        file.setFileSize(fileSize);
+        file.setStorageKey(blob.getStorageKey());
+        file.setContentHash(blob.getContentHash());
+        file.setBlob(blob);
+        file.setUser(user);
+        file.setEncrypted(true);
+        file.setEncryptionFormat(EncryptionFormat.GCM_SEGMENTED);
+        file.setCompression(blob.getCompression());
+        file.setFolder(folder);
+        return file;
+    }
+
+    public File uploadFile(MultipartFile multipartFile, User user) throws IOException {
+        return uploadFile(multipartFile, user, null);
+    }
+
+    public File getUserFile(Long fileId, User user) {
         File file = fileRepository.findById(fileId)
                 .orElseThrow(() -> new RuntimeException("File not found"));
 
         if (!file.getUser().getId().equals(user.getId())) {
             throw new RuntimeException("Unauthorized access to file");
         }
+        return file;
+    }
 
-        Path filePath = Paths.get(file.getFilePath());
-        byte[] encryptedContent = Files.readAllBytes(filePath);
-        try {
-            return encryptionService.decrypt(encryptedContent);
+    public void downloadFile(File file, OutputStream out) throws IOException {
+        downloadFile(file, 0, file.getFileSize(), out);
+    }
+
+    /**
+     * Writes {@code length} plaintext bytes from {@code offset}. Compressed files can only be read
+     * whole, since the stored stream has to be inflated from the start.
+     */
+    public void downloadFile(File file, long offset, long length, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try (InputStream in = openStored(file)) {
+            long storedLength = storedSize(file);
+            if (file.getCompression() == CompressionCodec.NONE) {
+                encryptionService.decrypt(file.getEncryptionFormat(), in, storedLength, offset, length, out);
+                success = true;
+                return;
+            }
+            if (offset != 0 || length != file.getFileSize()) {
+                throw new IllegalArgumentException("Compressed files can only be read whole");
+            }
+            try (OutputStream sink = compressionService.decompress(file.getCompression(), out)) {
+                encryptionService.decrypt(file.getEncryptionFormat(), in, storedLength, 0,
+                        encryptionService.plaintextSize(storedLength), sink);
+            }
+            success = true;
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Failed to decrypt file: " + e.getMessage());
+        } finally {
+            transferMetrics.recordDownload(length, System.nanoTime() - start, success);
+        }
+    }
+
+    // Files not yet moved by StorageMigrationService are read from their old absolute path
+    private InputStream openStored(File file) throws IOException {
+        if (file.getStorageKey() != null) {
+            return blockCache.openRead(file.getStorageKey());
         }
+        return Files.newInputStream(Paths.get(file.getFilePath()));
+    }
+
+    private long storedSize(File file) throws IOException {
+        if (file.getStorageKey() != null) {
+            return storageBackend.size(file.getStorageKey());
+        }
+        return Files.size(Paths.get(file.getFilePath()));
     }
 
     public List<File> getUserFiles(User user) {
         return fileRepository.findByUserOrderByCreatedAtDesc(user);
     }
 
-    public void deleteFile(Long fileId, User user) throws IOException {
-        File file = fileRepository.findById(fileId)
-                .orElseThrow(() -> new RuntimeException("File not found"));
-
-        if (!file.getUser().getId().equals(user.getId())) {
-            throw new RuntimeException("Unauthorized access to file");
+    // One page of a folder's files; a null folderId lists the root
+    public Page<FileSummary> getFolderFiles(User user, Long folderId, Pageable pageable) {
+        if (folderId == null) {
+            return fileRepository.findRootSummariesByUser(user, pageable);
         }
+        return fileRepository.findSummariesByUserAndFolderId(user, folderId, pageable);
+    }
+
+    public void deleteFile(Long fileId, User user) throws IOException {
+        File file = getUserFile(fileId, user);
 
-        Path filePath = Paths.get(file.getFilePath());
-        Files.deleteIfExists(filePath);
         fileRepository.delete(file);
+        if (file.getBlob() != null) {
+            blobService.release(file.getBlob());
+        } else {
+            blobService.deleteStored(file.getStorageKey(), file.getFilePath());
+        }
     }
 
     public void moveFilesToRoot(com.securefile.model.Folder folder) {
-        List<File> files = fileRepository.findByFolder(folder);
-        for (File file : files) {
-            file.setFolder(null);
-            file.setUpdatedAt(LocalDateTime.now());
-        }
-        fileRepository.saveAll(files);
+        fileRepository.moveFolderFilesToRoot(folder, LocalDateTime.now());
     }
 } 
\ No newline at end of file
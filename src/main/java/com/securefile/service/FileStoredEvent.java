@@ -0,0 +1,9 @@
+package com.securefile.service;
+
+import com.securefile.model.File;
+
+/**
+ * Published once a newly uploaded file has been stored and its row saved.
+ */
+public record FileStoredEvent(File file) {
+}
@@ -0,0 +1,135 @@
+package com.securefile.service;
+
+import com.securefile.model.CompressionCodec;
+import com.securefile.model.FolderArchiveEntry;
+import com.securefile.model.Folder;
+import com.securefile.repository.FileRepository;
+import com.securefile.repository.FolderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams a folder and everything beneath it as a ZIP archive. Each file is decrypted straight
+ * into its entry, and files are read from the database a page at a time, so memory does not grow
+ * with the size of the folder beyond the archive's own central directory.
+ */
+@Service
+@RequiredArgsConstructor
+public class FolderArchiveService {
+
+    private final FileRepository fileRepository;
+    private final FolderRepository folderRepository;
+    private final FileService fileService;
+    private final CompressionService compressionService;
+
+    @Value("${file.archive.page-size:200}")
+    private int pageSize;
+
+    @Value("${file.compression.level:6}")
+    private int level;
+
+    public String archiveName(Folder folder) {
+        return entryName(folder.getName()) + ".zip";
+    }
+
+    public void writeZip(Folder folder, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        zip.setLevel(level);
+        Set<String> used = new HashSet<>();
+        Map<Long, String> directories = directories(folder, used);
+        for (String directory : directories.values()) {
+            ZipEntry entry = new ZipEntry(directory);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(0);
+            entry.setCrc(0);
+            zip.putNextEntry(entry);
+            zip.closeEntry();
+        }
+
+        long afterId = 0;
+        List<FolderArchiveEntry> page;
+        while (!(page = fileRepository.findArchiveEntries(folder.getUser(), folder.getPath(), afterId,
+                PageRequest.of(0, pageSize))).isEmpty()) {
+            for (FolderArchiveEntry entry : page) {
+                afterId = entry.getId();
+                String name = unique(directories.get(entry.getFolderId()), entry.getOriginalFileName(), used);
+                writeEntry(zip, name, entry);
+            }
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    // Text is deflated; formats that are already compressed are stored, which needs the CRC up front
+    private void writeEntry(ZipOutputStream zip, String name, FolderArchiveEntry entry) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(name);
+        if (compressionService.selectCodec(entry.getFileType(), entry.getOriginalFileName()) == CompressionCodec.DEFLATE) {
+            zipEntry.setMethod(ZipEntry.DEFLATED);
+        } else {
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(entry.getFileSize());
+            zipEntry.setCompressedSize(entry.getFileSize());
+            zipEntry.setCrc(entry.getPlaintextCrc32() != null ? entry.getPlaintextCrc32() : crc(entry));
+        }
+        zip.putNextEntry(zipEntry);
+        fileService.downloadFile(entry.toFile(), zip);
+        zip.closeEntry();
+    }
+
+    // Files stored before the CRC was recorded take an extra decryption pass
+    private long crc(FolderArchiveEntry entry) throws IOException {
+        CRC32 crc = new CRC32();
+        fileService.downloadFile(entry.toFile(), new CheckedOutputStream(OutputStream.nullOutputStream(), crc));
+        return crc.getValue();
+    }
+
+    // Directory entry names by folder id; descendants come shallowest first, so parents are named before children
+    private Map<Long, String> directories(Folder folder, Set<String> used) {
+        Map<Long, String> directories = new LinkedHashMap<>();
+        directories.put(folder.getId(), unique("", folder.getName(), used) + "/");
+        for (Folder descendant : folderRepository.findDescendants(folder.getUser(), folder.getPath())) {
+            String parent = directories.get(parentId(descendant));
+            directories.put(descendant.getId(), unique(parent, descendant.getName(), used) + "/");
+        }
+        return directories;
+    }
+
+    private static Long parentId(Folder folder) {
+        String[] ids = folder.getPath().split("/");
+        return Long.parseLong(ids[ids.length - 2]);
+    }
+
+    // Two files (or a file and a subfolder) may share a name within a folder, but not within a ZIP directory
+    private static String unique(String directory, String name, Set<String> used) {
+        String base = entryName(name);
+        String candidate = directory + base;
+        int dot = base.lastIndexOf('.');
+        for (int n = 2; !used.add(candidate); n++) {
+            candidate = directory + (dot > 0
+                    ? base.substring(0, dot) + " (" + n + ")" + base.substring(dot)
+                    : base + " (" + n + ")");
+        }
+        return candidate;
+    }
+
+    // Separators in a stored name would otherwise create directories, or climb out of the archive
+    private static String entryName(String name) {
+        String cleaned = name == null ? "" : name.replace('/', '_').replace('\\', '_').trim();
+        return cleaned.isEmpty() || cleaned.equals(".") || cleaned.equals("..") ? "unnamed" : cleaned;
+    }
+}
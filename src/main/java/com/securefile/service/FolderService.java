@@ -1,28 +1,58 @@
 package com.securefile.service;
 
 import com.securefile.model.Folder;
+import com.securefile.model.FolderStats;
 import com.securefile.model.User;
+import com.securefile.repository.FileBlobRepository;
+import com.securefile.repository.FileRepository;
 import com.securefile.repository.FolderRepository;
+import com.securefile.repository.UploadSessionRepository;
 import com.securefile.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 @Service
 @RequiredArgsConstructor
 public class FolderService {
+    private static final Logger logger = LoggerFactory.getLogger(FolderService.class);
+
     private final FolderRepository folderRepository;
     private final UserRepository userRepository;
+    private final FileRepository fileRepository;
+    private final FileBlobRepository fileBlobRepository;
+    private final UploadSessionRepository uploadSessionRepository;
+    private final BlobCleanupWorker blobCleanupWorker;
+    private final TransactionTemplate transactionTemplate;
 
     public Folder createFolder(String name, User user, Folder parentFolder) {
-        Folder folder = new Folder();
-        folder.setName(name);
-        folder.setUser(user);
-        folder.setParentFolder(parentFolder);
-        return folderRepository.save(folder);
+        if (parentFolder != null && !parentFolder.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Parent folder not found");
+        }
+        return transactionTemplate.execute(status -> {
+            Folder folder = new Folder();
+            folder.setName(name);
+            folder.setUser(user);
+            folder.setParentFolder(parentFolder);
+            folderRepository.save(folder);
+            // The path ends with the folder's own id, which only exists after the insert
+            folder.setPath(childPath(parentFolder, folder.getId()));
+            folder.setDepth(parentFolder != null ? parentFolder.getDepth() + 1 : 0);
+            return folderRepository.save(folder);
+        });
     }
 
     public List<Folder> getUserFolders(User user) {
@@ -37,6 +67,72 @@ public class FolderService {
         return folderRepository.findById(id);
     }
 
+    // Every folder below this one, shallowest first
+    public List<Folder> getDescendants(Folder folder) {
+        return folderRepository.findDescendants(folder.getUser(), folder.getPath());
+    }
+
+    // Root-to-folder chain, ending with the folder itself
+    public List<Folder> getBreadcrumb(Folder folder) {
+        return folderRepository.findAncestors(pathIds(folder.getPath()));
+    }
+
+    // Files in the folder and all of its subfolders
+    public FolderStats getFolderStats(Folder folder) {
+        return folderRepository.findSubtreeStats(folder.getUser(), folder.getPath());
+    }
+
+    /**
+     * Moves a folder, with everything beneath it, under {@code newParent} (or to the root when
+     * {@code null}). The subtree's paths are rewritten by a single bulk update.
+     */
+    public Folder moveFolder(Folder folder, Folder newParent) {
+        if (newParent != null && !newParent.getUser().getId().equals(folder.getUser().getId())) {
+            throw new RuntimeException("Target folder not found");
+        }
+        return transactionTemplate.execute(status -> {
+            // The folder and the target's whole ancestor chain are locked before the check. A concurrent
+            // move that could turn this one into a cycle has to move one of them, so it waits for us
+            Set<Long> ids = new TreeSet<>();
+            ids.add(folder.getId());
+            if (newParent != null) {
+                ids.addAll(pathIds(newParent.getPath()));
+            }
+            Map<Long, Folder> locked = new HashMap<>();
+            for (Folder row : folderRepository.findAllForUpdate(ids)) {
+                locked.put(row.getId(), row);
+            }
+            Folder source = locked.get(folder.getId());
+            if (source == null) {
+                throw new RuntimeException("Folder not found");
+            }
+            Folder target = null;
+            if (newParent != null) {
+                target = locked.get(newParent.getId());
+                if (target == null) {
+                    throw new RuntimeException("Target folder not found");
+                }
+                if (!locked.keySet().containsAll(pathIds(target.getPath()))) {
+                    throw new RuntimeException("Target folder was moved, please retry");
+                }
+                if (target.getPath().startsWith(source.getPath())) {
+                    throw new RuntimeException("Cannot move a folder into itself or one of its subfolders");
+                }
+            }
+            String oldPath = source.getPath();
+            String newPath = childPath(target, source.getId());
+            int depthDelta = (target != null ? target.getDepth() + 1 : 0) - source.getDepth();
+            Long targetId = target != null ? target.getId() : null;
+
+            folderRepository.movePaths(source.getUser(), oldPath, newPath, depthDelta);
+            Folder moved = folderRepository.findById(source.getId())
+                    .orElseThrow(() -> new RuntimeException("Folder not found"));
+            moved.setParentFolder(targetId != null ? folderRepository.getReferenceById(targetId) : null);
+            moved.setUpdatedAt(LocalDateTime.now());
+            return folderRepository.save(moved);
+        });
+    }
+
     public Folder renameFolder(Long folderId, String newName) {
         Folder folder = folderRepository.findById(folderId)
                 .orElseThrow(() -> new RuntimeException("Folder not found"));
@@ -46,7 +142,9 @@ public class FolderService {
     }
 
     public void deleteFolder(Long folderId) {
-        folderRepository.deleteById(folderId);
+        Folder folder = folderRepository.findById(folderId)
+                .orElseThrow(() -> new RuntimeException("Folder not found"));
+        deleteFolderTree(folder, true);
     }
 
     public void renameFolder(Folder folder, String newName) {
@@ -56,6 +154,82 @@ public class FolderService {
     }
 
     public void deleteFolder(Folder folder) {
-        folderRepository.delete(folder);
+        deleteFolderTree(folder, true);
+    }
+
+    /**
+     * Deletes a folder and all of its subfolders with a handful of set-based statements in one
+     * transaction. Files in the subtree are either moved to the root or deleted; stored content
+     * they no longer share with anything is removed afterwards by {@link BlobCleanupWorker}.
+     */
+    public void deleteFolderTree(Folder folder, boolean deleteFiles) {
+        User user = folder.getUser();
+        String path = folder.getPath();
+        Unshared unshared = transactionTemplate.execute(status -> {
+            Unshared orphaned = new Unshared(List.of(), List.of());
+            if (deleteFiles) {
+                orphaned = new Unshared(fileRepository.findUnsharedKeysInSubtree(user, path),
+                        fileRepository.findUnsharedLegacyPathsInSubtree(user, path));
+                fileBlobRepository.releaseSubtreeReferences(user, path);
+                fileRepository.deleteSubtreeFiles(user, path);
+            } else {
+                fileRepository.moveSubtreeFilesToRoot(user, path, LocalDateTime.now());
+            }
+            uploadSessionRepository.moveSubtreeSessionsToRoot(user, path);
+            folderRepository.detachSubtree(user, path);
+            int deleted = folderRepository.deleteSubtree(user, path);
+            logger.debug("Deleted {} folders under {}", deleted, path);
+            return orphaned;
+        });
+        if (deleteFiles) {
+            blobCleanupWorker.deleteLater(unshared.storageKeys(), unshared.legacyPaths());
+            blobCleanupWorker.requestCleanup();
+        }
+    }
+
+    private record Unshared(List<String> storageKeys, List<String> legacyPaths) {
+    }
+
+    // Folders created before paths were introduced get theirs computed from the parent chain once
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillPaths() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Folder> folders = folderRepository.findByPathIsNull();
+            if (folders.isEmpty()) {
+                return;
+            }
+            for (Folder folder : folders) {
+                assignPath(folder);
+            }
+            folderRepository.saveAll(folders);
+            logger.info("Backfilled materialized paths for {} folders", folders.size());
+        });
+    }
+
+    private void assignPath(Folder folder) {
+        if (folder.getPath() != null) {
+            return;
+        }
+        Folder parent = folder.getParentFolder();
+        if (parent != null) {
+            assignPath(parent);
+        }
+        folder.setPath(childPath(parent, folder.getId()));
+        folder.setDepth(parent != null ? parent.getDepth() + 1 : 0);
+    }
+
+    // The ids in a path, root first; the last one is the folder's own
+    private static List<Long> pathIds(String path) {
+        List<Long> ids = new ArrayList<>();
+        for (String id : path.split("/")) {
+            if (!id.isEmpty()) {
+                ids.add(Long.parseLong(id));
+            }
+        }
+        return ids;
+    }
+
+    private static String childPath(Folder parent, Long id) {
+        return (parent != null ? parent.getPath() : "/") + id + "/";
     }
-} 
\ No newline at end of file
+}
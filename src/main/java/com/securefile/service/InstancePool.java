@@ -0,0 +1,43 @@
+package com.securefile.service;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small lock-free pool for expensive, non-thread-safe JCA objects such as {@code Cipher} and
+ * {@code Mac}. Borrowing never blocks: an empty pool creates a new instance, and instances
+ * returned beyond {@code maxIdle} are dropped.
+ */
+class InstancePool<T> {
+
+    interface Factory<T> {
+        T create() throws Exception;
+    }
+
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Factory<T> factory;
+    private final int maxIdle;
+
+    InstancePool(Factory<T> factory, int maxIdle) {
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    T borrow() throws Exception {
+        T instance = idle.poll();
+        if (instance == null) {
+            return factory.create();
+        }
+        idleCount.decrementAndGet();
+        return instance;
+    }
+
+    void release(T instance) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offer(instance);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.securefile.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.securefile.model.File;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates lightweight JPEG renditions for previews: images are downscaled and PDFs are
+ * rasterised from their first page. Work is queued after upload and runs on a small background
+ * pool; a preview that finds no rendition is served the original and queues one for next time.
+ */
+@Service
+@RequiredArgsConstructor
+public class PreviewRenditionService {
+    private static final Logger logger = LoggerFactory.getLogger(PreviewRenditionService.class);
+
+    private final FileService fileService;
+    private final RenditionStore renditionStore;
+
+    @Value("${preview.max-dimension:1024}")
+    private int maxDimension;
+
+    // Images this small are previewed as they are
+    @Value("${preview.min-source-bytes:262144}")
+    private long minSourceBytes;
+
+    // The original is decrypted into memory to render it, so very large files are left alone
+    @Value("${preview.max-source-bytes:52428800}")
+    private long maxSourceBytes;
+
+    @Value("${preview.workers:2}")
+    private int workers;
+
+    @Value("${preview.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Content that produced no rendition (corrupt, or nothing to draw), so it is not decrypted again on every preview
+    private final Cache<String, Boolean> unrenderable = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "preview-rendition");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @EventListener
+    public void onFileStored(FileStoredEvent event) {
+        requestRendition(event.file());
+    }
+
+    // Answered from memory, so conditional requests can be decided without reading the rendition
+    public boolean hasRendition(File file) {
+        return file.getContentHash() != null && renditionStore.contains(file.getContentHash());
+    }
+
+    /**
+     * The stored rendition for the file's content, if one has been generated. Queues generation
+     * when it is missing, so the original only has to be served until the worker catches up.
+     */
+    public Optional<byte[]> getRendition(File file) throws IOException {
+        String contentHash = file.getContentHash();
+        if (contentHash == null) {
+            return Optional.empty();
+        }
+        Optional<byte[]> rendition = renditionStore.get(contentHash);
+        if (rendition.isEmpty()) {
+            requestRendition(file);
+        }
+        return rendition;
+    }
+
+    // Queues generation unless the rendition exists, is in progress, or cannot be made
+    public void requestRendition(File file) {
+        String contentHash = file.getContentHash();
+        if (contentHash == null || !isRenderable(file) || unrenderable.getIfPresent(contentHash) != null
+                || renditionStore.contains(contentHash) || !pending.add(contentHash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    Optional<byte[]> rendition = render(file);
+                    if (rendition.isPresent()) {
+                        store(contentHash, rendition.get());
+                    } else {
+                        unrenderable.put(contentHash, Boolean.TRUE);
+                    }
+                } catch (Exception e) {
+                    unrenderable.put(contentHash, Boolean.TRUE);
+                    logger.warn("Could not render a preview of file {}: {}", file.getId(), e.getMessage());
+                } finally {
+                    pending.remove(contentHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The queue is full; the next preview of this file asks again
+            pending.remove(contentHash);
+        }
+    }
+
+    private void store(String contentHash, byte[] rendition) {
+        try {
+            renditionStore.put(contentHash, rendition);
+        } catch (IOException e) {
+            logger.warn("Could not store a preview rendition: {}", e.getMessage());
+        }
+    }
+
+    private boolean isRenderable(File file) {
+        return file.getFileSize() <= maxSourceBytes
+                && (isPdf(file) || (isImage(file) && file.getFileSize() > minSourceBytes));
+    }
+
+    private Optional<byte[]> render(File file) throws IOException {
+        ByteArrayOutputStream original = new ByteArrayOutputStream((int) Math.min(file.getFileSize(), Integer.MAX_VALUE));
+        fileService.downloadFile(file, original);
+        BufferedImage image = isPdf(file) ? renderFirstPage(original.toByteArray()) : readImage(original.toByteArray());
+        if (image == null) {
+            return Optional.empty();
+        }
+        return Optional.of(toJpeg(scale(image)));
+    }
+
+    private BufferedImage renderFirstPage(byte[] pdf) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            if (document.getNumberOfPages() == 0) {
+                return null;
+            }
+            PDRectangle box = document.getPage(0).getCropBox();
+            float scale = maxDimension / Math.max(box.getWidth(), box.getHeight());
+            return new PDFRenderer(document).renderImage(0, scale, ImageType.RGB);
+        }
+    }
+
+    // Decodes with subsampling so a huge image never has to be held at full resolution
+    private BufferedImage readImage(byte[] data) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        double factor = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+        // Drawn onto white so transparent areas do not turn black in the JPEG
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private static byte[] toJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.8f);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isPdf(File file) {
+        return type(file).equals("application/pdf");
+    }
+
+    // Formats ImageIO cannot decode, such as WebP and SVG, are previewed as they are
+    private static boolean isImage(File file) {
+        String type = type(file);
+        return type.startsWith("image/") && ImageIO.getImageReadersByMIMEType(type).hasNext();
+    }
+
+    private static String type(File file) {
+        return file.getFileType() == null ? "" : file.getFileType().toLowerCase(Locale.ROOT).split(";")[0].trim();
+    }
+}
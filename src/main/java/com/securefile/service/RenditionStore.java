@@ -0,0 +1,200 @@
+package com.securefile.service;
+
+import com.securefile.model.EncryptionFormat;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Encrypted on-disk cache of preview renditions, keyed by the content hash of the original.
+ * Entries are kept in least-recently-used order and the oldest are deleted once the total size
+ * passes {@code preview.cache.max-bytes}. Access times are written back to the files so the order
+ * survives a restart.
+ */
+@Component
+@RequiredArgsConstructor
+public class RenditionStore {
+    private static final Logger logger = LoggerFactory.getLogger(RenditionStore.class);
+
+    private static final String SUFFIX = ".rendition";
+
+    private final EncryptionService encryptionService;
+
+    @Value("${preview.cache.dir:${file.upload-dir}/previews}")
+    private String cacheDir;
+
+    @Value("${preview.cache.max-bytes:268435456}")
+    private long maxBytes;
+
+    private Path root;
+    // Stored size by content hash, eldest first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private long totalBytes;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(cacheDir);
+        Files.createDirectories(root);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(root)) {
+            files = new ArrayList<>(listing.toList());
+        }
+        files.sort(Comparator.comparing(RenditionStore::lastModified));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (!name.endsWith(SUFFIX)) {
+                // Left behind by a write that did not finish
+                Files.deleteIfExists(file);
+                continue;
+            }
+            long size = Files.size(file);
+            entries.put(name.substring(0, name.length() - SUFFIX.length()), size);
+            totalBytes += size;
+        }
+        evict();
+        logger.info("Preview cache holds {} renditions ({} bytes)", entries.size(), totalBytes);
+    }
+
+    public boolean contains(String contentHash) {
+        lock.lock();
+        try {
+            return entries.containsKey(contentHash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the decrypted rendition, which is small enough to hold for the length of a request.
+     */
+    public Optional<byte[]> get(String contentHash) throws IOException {
+        lock.lock();
+        try {
+            if (entries.get(contentHash) == null) {
+                return Optional.empty();
+            }
+        } finally {
+            lock.unlock();
+        }
+        Path file = path(contentHash);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = Files.newInputStream(file)) {
+            long storedLength = Files.size(file);
+            encryptionService.decrypt(EncryptionFormat.GCM_SEGMENTED, in, storedLength, 0,
+                    encryptionService.plaintextSize(storedLength), out);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (NoSuchFileException e) {
+            // Evicted between the lookup and the read
+            return Optional.empty();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decrypt rendition: " + e.getMessage());
+        }
+        return Optional.of(out.toByteArray());
+    }
+
+    public void put(String contentHash, byte[] rendition) throws IOException {
+        Path file = path(contentHash);
+        Path temp = root.resolve("." + UUID.randomUUID() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            encryptionService.encrypt(new ByteArrayInputStream(rendition), out, rendition.length);
+        } catch (Exception e) {
+            Files.deleteIfExists(temp);
+            throw new IOException("Failed to store rendition: " + e.getMessage(), e);
+        }
+        long size = Files.size(temp);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        lock.lock();
+        try {
+            Long previous = entries.put(contentHash, size);
+            totalBytes += size - (previous != null ? previous : 0);
+        } finally {
+            lock.unlock();
+        }
+        evict();
+    }
+
+    // Called when the original's content is deleted, so no copy of it outlives the blob
+    public void remove(String contentHash) throws IOException {
+        lock.lock();
+        try {
+            Long size = entries.remove(contentHash);
+            if (size == null) {
+                return;
+            }
+            totalBytes -= size;
+        } finally {
+            lock.unlock();
+        }
+        Files.deleteIfExists(path(contentHash));
+    }
+
+    public long getTotalBytes() {
+        lock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict() throws IOException {
+        List<String> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                totalBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (String contentHash : evicted) {
+            Files.deleteIfExists(path(contentHash));
+        }
+    }
+
+    // Content hashes are hex, so they are safe to use as file names
+    private Path path(String contentHash) {
+        return root.resolve(contentHash + SUFFIX);
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
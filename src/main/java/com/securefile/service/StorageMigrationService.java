@@ -0,0 +1,183 @@
+package com.securefile.service;
+
+import com.securefile.model.File;
+import com.securefile.model.FileBlob;
+import com.securefile.repository.FileBlobRepository;
+import com.securefile.repository.FileRepository;
+import com.securefile.storage.StorageBackend;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ * Moves content stored before storage keys existed (flat files recorded by absolute path) into
+ * the configured {@link StorageBackend}. Runs in the background at startup and can be stopped at
+ * any point: a row switches to its storage key only after the copy is complete, and the old file
+ * is deleted after that commit. Rows whose file has gone missing are logged and left alone.
+ */
+@Service
+@RequiredArgsConstructor
+public class StorageMigrationService {
+    private static final Logger logger = LoggerFactory.getLogger(StorageMigrationService.class);
+
+    private final FileRepository fileRepository;
+    private final FileBlobRepository fileBlobRepository;
+    private final StorageBackend storageBackend;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${storage.migration.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.migration.batch-size:200}")
+    private int batchSize;
+
+    // Schemas created before storage keys declared the old path columns NOT NULL
+    @PostConstruct
+    public void relaxLegacyColumns() {
+        dropNotNull("files", "file_path");
+        dropNotNull("file_blobs", "storage_path");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                migrate();
+            } catch (Exception e) {
+                logger.error("Storage migration failed: {}", e.getMessage(), e);
+            }
+        }, "storage-migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Migrates every blob and un-deduplicated file that still has an absolute path. Returns the
+     * number of stored files moved.
+     */
+    public int migrate() throws IOException {
+        int moved = 0;
+        long afterId = 0;
+        List<FileBlob> blobs;
+        while (!(blobs = fileBlobRepository.findUnmigrated(afterId, PageRequest.of(0, batchSize))).isEmpty()) {
+            for (FileBlob blob : blobs) {
+                afterId = blob.getId();
+                if (migrate(blob.getStoragePath(), key -> {
+                    if (fileBlobRepository.assignStorageKey(blob.getId(), key) == 0) {
+                        return false;
+                    }
+                    fileRepository.assignBlobStorageKey(blob.getId(), key);
+                    return true;
+                })) {
+                    moved++;
+                }
+            }
+        }
+
+        afterId = 0;
+        List<File> files;
+        while (!(files = fileRepository.findUnmigrated(afterId, PageRequest.of(0, batchSize))).isEmpty()) {
+            for (File file : files) {
+                afterId = file.getId();
+                if (migrate(file.getFilePath(), key -> fileRepository.assignStorageKey(file.getId(), key) > 0)) {
+                    moved++;
+                }
+            }
+        }
+        if (moved > 0) {
+            logger.info("Moved {} stored files into the storage backend", moved);
+        }
+        return moved;
+    }
+
+    private boolean migrate(String legacyPath, Predicate<String> assignKey) throws IOException {
+        if (legacyPath == null) {
+            return false;
+        }
+        Path source = Paths.get(legacyPath);
+        if (!Files.exists(source)) {
+            logger.warn("Stored file {} is missing, leaving its row unmigrated", legacyPath);
+            return false;
+        }
+        // Old files were already named <uuid>.<ext>, which is a valid key
+        String key = source.getFileName().toString();
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = storageBackend.openWrite(key)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            storageBackend.delete(key);
+            throw e;
+        }
+        // The row may have been deleted while the copy was running; then the copy is dropped instead
+        if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> assignKey.test(key)))) {
+            storageBackend.delete(key);
+            return false;
+        }
+        Files.deleteIfExists(source);
+        return true;
+    }
+
+    /*
+     * ddl-auto=update adds columns but never relaxes an existing NOT NULL, so this is done here. The
+     * statement differs per database; on one not listed startup fails with the column to change by
+     * hand, rather than the migration later failing on the first row it clears.
+     */
+    private void dropNotNull(String table, String column) {
+        LegacyColumn legacy = jdbcTemplate.execute((ConnectionCallback<LegacyColumn>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            boolean upper = metaData.storesUpperCaseIdentifiers();
+            try (ResultSet columns = metaData.getColumns(connection.getCatalog(), connection.getSchema(),
+                    upper ? table.toUpperCase() : table, upper ? column.toUpperCase() : column)) {
+                if (!columns.next() || columns.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls) {
+                    return null;
+                }
+                return new LegacyColumn(metaData.getDatabaseProductName(), columns.getInt("COLUMN_SIZE"));
+            }
+        });
+        if (legacy == null) {
+            return;
+        }
+        String product = legacy.product().toLowerCase(Locale.ROOT);
+        String ddl;
+        if (product.contains("mysql") || product.contains("mariadb")) {
+            ddl = "ALTER TABLE " + table + " MODIFY " + column + " VARCHAR(" + legacy.size() + ") NULL";
+        } else if (product.contains("postgresql")) {
+            ddl = "ALTER TABLE " + table + " ALTER COLUMN " + column + " DROP NOT NULL";
+        } else if (product.equals("h2")) {
+            ddl = "ALTER TABLE " + table + " ALTER COLUMN " + column + " SET NULL";
+        } else {
+            throw new IllegalStateException("Cannot make " + table + "." + column + " nullable on " + legacy.product()
+                    + "; drop its NOT NULL constraint by hand before starting");
+        }
+        jdbcTemplate.execute(ddl);
+        logger.info("Made {}.{} nullable", table, column);
+    }
+
+    private record LegacyColumn(String product, int size) {
+    }
+}
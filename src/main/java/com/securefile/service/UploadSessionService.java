@@ -0,0 +1,363 @@
+package com.securefile.service;
+
+import com.securefile.metrics.TransferMetrics;
+import com.securefile.model.EncryptionFormat;
+import com.securefile.model.File;
+import com.securefile.model.Folder;
+import com.securefile.model.UploadSession;
+import com.securefile.model.User;
+import com.securefile.repository.UploadSessionRepository;
+import com.securefile.storage.StorageBackend;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Resumable uploads. A session fixes the segmented-format header up front, so every chunk can be
+ * encrypted into its own run of segments as soon as it arrives, in any order. Committing writes the
+ * header and the encrypted chunks to storage as they are, and makes one decrypt-and-verify pass over
+ * the same bytes on the way through to authenticate them and take the content hash and CRC; nothing
+ * is re-encrypted. Because the header is fixed, each chunk is accepted once; a chunk whose upload
+ * failed after encryption started can only be sent again in a new session.
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadSessionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessionService.class);
+    private static final String PART_SUFFIX = ".part";
+    private static final String CLAIM_SUFFIX = ".claim";
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final EncryptionService encryptionService;
+    private final FileService fileService;
+    private final BlobService blobService;
+    private final StorageBackend storageBackend;
+    private final TransferMetrics transferMetrics;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${upload.session.chunk-size:8388608}")
+    private int chunkSize;
+
+    @Value("${upload.session.ttl-ms:86400000}")
+    private long sessionTtlMs;
+
+    public UploadSession createSession(String originalFileName, String fileType, long totalSize,
+                                       User user, Folder folder) throws IOException {
+        if (originalFileName == null || !originalFileName.contains(".")) {
+            throw new RuntimeException("Invalid file name");
+        }
+        if (totalSize < 0) {
+            throw new RuntimeException("Invalid file size");
+        }
+        // Chunks must hold whole segments so they can be encrypted independently
+        int segmentSize = encryptionService.getSegmentSize();
+        int sessionChunkSize = Math.max(segmentSize, chunkSize / segmentSize * segmentSize);
+        long chunkCount = Math.max(1, (totalSize + sessionChunkSize - 1) / sessionChunkSize);
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setUser(user);
+        session.setFolder(folder);
+        session.setOriginalFileName(originalFileName);
+        session.setFileType(fileType != null ? fileType : "application/octet-stream");
+        session.setTotalSize(totalSize);
+        session.setChunkSize(sessionChunkSize);
+        session.setChunkCount(Math.toIntExact(chunkCount));
+        session.setEncryptionHeader(encryptionService.newSegmentHeader());
+
+        Files.createDirectories(sessionDir(session.getId()));
+        return uploadSessionRepository.save(session);
+    }
+
+    public UploadSession getSession(String sessionId, User user) {
+        UploadSession session = uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new RuntimeException("Upload session not found"));
+
+        if (!session.getUser().getId().equals(user.getId())) {
+            throw new RuntimeException("Unauthorized access to upload session");
+        }
+        return session;
+    }
+
+    public void writeChunk(UploadSession session, int index, InputStream in) throws IOException {
+        if (index < 0 || index >= session.getChunkCount()) {
+            throw new RuntimeException("Chunk index out of range");
+        }
+        Path dir = sessionDir(session.getId());
+        // The session header fixes the key and every segment nonce, so a chunk index may only be
+        // encrypted once: a resend with different bytes would reuse GCM nonces. The claim is kept
+        // for the life of the session, so resending means aborting and starting a new session.
+        Path claim = dir.resolve(index + CLAIM_SUFFIX);
+        try {
+            Files.createFile(claim);
+        } catch (FileAlreadyExistsException e) {
+            throw new RuntimeException("Chunk " + index + " was already sent; abort the session to upload it again");
+        }
+        Path temp = dir.resolve(index + ".tmp");
+        boolean finalChunk = index == session.getChunkCount() - 1;
+        long firstSegment = (long) index * (session.getChunkSize() / encryptionService.getSegmentSize());
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            long written;
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                written = encryptionService.encryptSegments(session.getEncryptionHeader(), firstSegment, finalChunk,
+                        in, out, expectedChunkLength(session, index));
+            }
+            if (written != expectedChunkLength(session, index)) {
+                throw new RuntimeException("Chunk " + index + " must be " + expectedChunkLength(session, index) + " bytes");
+            }
+            Files.move(temp, dir.resolve(index + PART_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+            success = true;
+        } catch (RuntimeException | IOException e) {
+            discardAttempt(claim, temp);
+            throw e;
+        } catch (Exception e) {
+            discardAttempt(claim, temp);
+            throw new RuntimeException("Failed to encrypt chunk: " + e.getMessage());
+        } finally {
+            transferMetrics.recordUpload("resumable", expectedChunkLength(session, index), System.nanoTime() - start,
+                    success);
+        }
+        uploadSessionRepository.touch(session.getId(), LocalDateTime.now());
+    }
+
+    // A failed attempt frees its index only if no ciphertext reached the disk
+    private static void discardAttempt(Path claim, Path temp) throws IOException {
+        boolean encrypted = Files.exists(temp) && Files.size(temp) > 0;
+        Files.deleteIfExists(temp);
+        if (!encrypted) {
+            Files.deleteIfExists(claim);
+        }
+    }
+
+    public List<Integer> getReceivedChunks(UploadSession session) throws IOException {
+        try (Stream<Path> parts = Files.list(sessionDir(session.getId()))) {
+            return parts.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(PART_SUFFIX))
+                    .map(name -> Integer.valueOf(name.substring(0, name.length() - PART_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    public File commit(UploadSession session) throws IOException {
+        List<Integer> received = getReceivedChunks(session);
+        if (received.size() != session.getChunkCount()) {
+            throw new RuntimeException("Upload incomplete: " + received.size() + " of "
+                    + session.getChunkCount() + " chunks received");
+        }
+
+        Path dir = sessionDir(session.getId());
+        String storageKey = fileService.newStorageKey(session.getOriginalFileName());
+        String contentHash;
+        CRC32 crc = new CRC32();
+        try {
+            contentHash = store(session, dir, storageKey, crc);
+        } catch (IOException | RuntimeException e) {
+            storageBackend.delete(storageKey);
+            throw e;
+        }
+
+        // Deleting the row claims the session, so a concurrent commit cannot produce a second file
+        if (uploadSessionRepository.deleteSession(session.getId()) == 0) {
+            storageBackend.delete(storageKey);
+            throw new RuntimeException("Upload session already committed");
+        }
+        try {
+            return fileService.saveEncryptedFile(storageKey, contentHash, crc.getValue(), session.getOriginalFileName(),
+                    session.getFileType(), session.getTotalSize(), session.getUser(), session.getFolder());
+        } catch (IOException | RuntimeException e) {
+            storageBackend.delete(storageKey);
+            throw e;
+        } finally {
+            deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Writes the header and every part to storage in one pass, decrypting the same bytes on the
+     * way through. Chunks arrive out of order, so this is where the content hash and CRC are taken.
+     */
+    private String store(UploadSession session, Path dir, String storageKey, CRC32 crc) throws IOException {
+        long storedLength = session.getEncryptionHeader().length;
+        List<InputStream> parts = new ArrayList<>();
+        parts.add(new ByteArrayInputStream(session.getEncryptionHeader()));
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            Path part = dir.resolve(i + PART_SUFFIX);
+            storedLength += Files.size(part);
+            parts.add(new LazyFileInputStream(part));
+        }
+
+        MessageDigest digest = blobService.newDigest();
+        try (OutputStream stored = storageBackend.openWrite(storageKey);
+             InputStream in = new TeeInputStream(new SequenceInputStream(Collections.enumeration(parts)), stored);
+             OutputStream out = new CheckedOutputStream(
+                     new DigestOutputStream(OutputStream.nullOutputStream(), digest), crc)) {
+            encryptionService.decrypt(EncryptionFormat.GCM_SEGMENTED, in, storedLength, 0, session.getTotalSize(), out);
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to verify upload: " + e.getMessage());
+        }
+        return blobService.toHex(digest);
+    }
+
+    public void abort(UploadSession session) throws IOException {
+        uploadSessionRepository.deleteSession(session.getId());
+        deleteDirectory(sessionDir(session.getId()));
+    }
+
+    @Scheduled(fixedDelayString = "${upload.session.sweep-interval-ms:600000}")
+    public void sweepAbandonedSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(sessionTtlMs));
+        for (UploadSession session : uploadSessionRepository.findByUpdatedAtBefore(cutoff)) {
+            try {
+                abort(session);
+                logger.info("Removed abandoned upload session {}", session.getId());
+            } catch (Exception e) {
+                logger.error("Failed to remove upload session {}: {}", session.getId(), e.getMessage());
+            }
+        }
+
+        // Directories left behind by a crash between claiming and cleaning up a session
+        Path root = Paths.get(uploadDir, ".sessions");
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.toList()) {
+                if (Files.getLastModifiedTime(dir).toMillis() < System.currentTimeMillis() - sessionTtlMs
+                        && !uploadSessionRepository.existsById(dir.getFileName().toString())) {
+                    deleteDirectory(dir);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to sweep upload session directories: {}", e.getMessage());
+        }
+    }
+
+    private long expectedChunkLength(UploadSession session, int index) {
+        long start = (long) index * session.getChunkSize();
+        return Math.min(session.getChunkSize(), session.getTotalSize() - start);
+    }
+
+    private Path sessionDir(String sessionId) {
+        return Paths.get(uploadDir, ".sessions", sessionId);
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // Copies everything read from the source to the sink
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream sink;
+
+        TeeInputStream(InputStream in, OutputStream sink) {
+            super(in);
+            this.sink = sink;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                sink.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                sink.write(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            int read;
+            while (skipped < n && (read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped))) != -1) {
+                skipped += read;
+            }
+            return skipped;
+        }
+    }
+
+    // Opens the part on first read so only one part file is open at a time
+    private static class LazyFileInputStream extends InputStream {
+        private final Path path;
+        private InputStream in;
+
+        LazyFileInputStream(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return open().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return open().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        private InputStream open() throws IOException {
+            if (in == null) {
+                in = Files.newInputStream(path);
+            }
+            return in;
+        }
+    }
+}
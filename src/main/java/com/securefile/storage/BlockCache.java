@@ -0,0 +1,197 @@
+package com.securefile.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Keeps recently read blocks of stored objects in off-heap memory, in front of the
+ * {@link StorageBackend}. Blocks hold the stored bytes, which are ciphertext, so plaintext still
+ * only exists for the length of a request. Eviction is Caffeine's W-TinyLFU, which admits a new
+ * block only if it is likely to be read more often than the one it replaces, so a single large
+ * download or folder export does not flush the hot set. A stream that keeps missing is treated as a
+ * scan and stops filling the cache, so a cold multi-gigabyte read does not allocate off-heap memory
+ * for blocks that would only be thrown away.
+ */
+@Component
+public class BlockCache {
+    private static final Logger logger = LoggerFactory.getLogger(BlockCache.class);
+
+    // Approximate per-entry cost of the key and map node on top of the block itself
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final StorageBackend storageBackend;
+    private final int blockSize;
+    private final int scanBlocks;
+    private final Cache<BlockKey, ByteBuffer> blocks;
+    private CacheStats lastLogged = CacheStats.empty();
+
+    public BlockCache(StorageBackend storageBackend,
+                      @Value("${storage.block-cache.max-bytes:268435456}") long maxBytes,
+                      @Value("${storage.block-cache.block-size:262144}") int blockSize,
+                      @Value("${storage.block-cache.scan-blocks:16}") int scanBlocks) {
+        this.storageBackend = storageBackend;
+        this.blockSize = blockSize;
+        this.scanBlocks = scanBlocks;
+        this.blocks = maxBytes > 0
+                ? Caffeine.newBuilder()
+                        .maximumWeight(maxBytes)
+                        .weigher((BlockKey key, ByteBuffer block) -> block.capacity() + ENTRY_OVERHEAD)
+                        .recordStats()
+                        .build()
+                : null;
+    }
+
+    /**
+     * Opens an object for reading through the cache. Like {@link StorageBackend#openRead}, a
+     * leading skip is cheap, and only the blocks that are actually read are fetched. A missing
+     * object is reported by the first read rather than here.
+     */
+    public InputStream openRead(String key) throws IOException {
+        if (blocks == null) {
+            return storageBackend.openRead(key);
+        }
+        return new CachedInputStream(key);
+    }
+
+    // Called when an object of storedSize bytes is deleted, so its blocks do not outlive it
+    public void invalidate(String key, long storedSize) {
+        if (blocks != null) {
+            long count = (storedSize + blockSize - 1) / blockSize;
+            for (long index = 0; index < count; index++) {
+                blocks.invalidate(new BlockKey(key, index));
+            }
+        }
+    }
+
+    public CacheStats stats() {
+        return blocks != null ? blocks.stats() : CacheStats.empty();
+    }
+
+    public long cachedBytes() {
+        return blocks != null ? blocks.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L) : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${storage.block-cache.stats-interval-ms:300000}")
+    public void logStats() {
+        CacheStats current = stats();
+        CacheStats recent = current.minus(lastLogged);
+        lastLogged = current;
+        if (recent.requestCount() > 0) {
+            logger.info("Block cache: {} reads, hit ratio {}, {} evictions, {} bytes cached",
+                    recent.requestCount(), String.format("%.3f", recent.hitRate()), recent.evictionCount(),
+                    cachedBytes());
+        }
+    }
+
+    private record BlockKey(String key, long index) {
+    }
+
+    /**
+     * Serves reads from cached blocks and fetches missing ones from a single backend stream that
+     * is opened at the first missing block and kept for the blocks after it. After
+     * {@code scanBlocks} misses in a row, further misses are read into a buffer the stream reuses
+     * and are not cached; a hit starts the count again, so a file that is read repeatedly still
+     * works its way into the cache.
+     */
+    private class CachedInputStream extends InputStream {
+        private final String key;
+        private long position;
+        private long blockIndex = -1;
+        private ByteBuffer block;
+        private InputStream source;
+        private long sourcePosition;
+        private int missesInRow;
+        private byte[] scratch;
+
+        CachedInputStream(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer current = block(position / blockSize);
+            int offset = (int) (position % blockSize);
+            if (current == null || offset >= current.limit()) {
+                return -1;
+            }
+            int count = Math.min(len, current.limit() - offset);
+            current.get(offset, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            if (n <= 0) {
+                return 0;
+            }
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            block = null;
+            if (source != null) {
+                source.close();
+            }
+        }
+
+        private ByteBuffer block(long index) throws IOException {
+            if (index != blockIndex) {
+                BlockKey blockKey = new BlockKey(key, index);
+                ByteBuffer cached = blocks.getIfPresent(blockKey);
+                missesInRow = cached != null ? 0 : missesInRow + 1;
+                block = cached != null ? cached : fetch(blockKey, missesInRow <= scanBlocks);
+                blockIndex = index;
+            }
+            return block;
+        }
+
+        // Loads outside the cache's own locks, so a slow backend never blocks readers of other blocks
+        private ByteBuffer fetch(BlockKey blockKey, boolean cache) throws IOException {
+            long start = blockKey.index() * blockSize;
+            if (source == null || sourcePosition > start) {
+                if (source != null) {
+                    source.close();
+                }
+                source = storageBackend.openRead(key);
+                sourcePosition = 0;
+            }
+            source.skipNBytes(start - sourcePosition);
+            if (scratch == null) {
+                scratch = new byte[blockSize];
+            }
+            int length = source.readNBytes(scratch, 0, blockSize);
+            sourcePosition = start + length;
+            if (length == 0) {
+                return null;
+            }
+            if (!cache) {
+                return ByteBuffer.wrap(scratch, 0, length);
+            }
+            ByteBuffer fetched = ByteBuffer.allocateDirect(length).put(scratch, 0, length).flip();
+            blocks.put(blockKey, fetched);
+            return fetched;
+        }
+    }
+}
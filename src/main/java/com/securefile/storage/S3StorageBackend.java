@@ -0,0 +1,286 @@
+package com.securefile.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores objects in an S3-compatible bucket. {@code storage.s3.endpoint} points the client at
+ * MinIO or another local stand-in; path-style addressing is used by default for that reason.
+ * Writes are buffered into {@code storage.s3.part-size} parts and sent as a multipart upload, so
+ * an object of any size is written with bounded memory.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3StorageBackend implements StorageBackend {
+
+    // S3 rejects multipart parts smaller than 5 MiB, except the last
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final S3Client client;
+    private final String bucket;
+    private final String prefix;
+    private final int partSize;
+
+    @Autowired
+    public S3StorageBackend(@Value("${storage.s3.bucket}") String bucket,
+                            @Value("${storage.s3.prefix:}") String prefix,
+                            @Value("${storage.s3.endpoint:}") String endpoint,
+                            @Value("${storage.s3.region:us-east-1}") String region,
+                            @Value("${storage.s3.access-key:}") String accessKey,
+                            @Value("${storage.s3.secret-key:}") String secretKey,
+                            @Value("${storage.s3.path-style-access:true}") boolean pathStyleAccess,
+                            @Value("${storage.s3.part-size:8388608}") int partSize) {
+        this(buildClient(endpoint, region, accessKey, secretKey, pathStyleAccess), bucket, prefix, partSize);
+    }
+
+    S3StorageBackend(S3Client client, String bucket, String prefix, int partSize) {
+        this.client = client;
+        this.bucket = bucket;
+        this.prefix = prefix;
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+    }
+
+    private static S3Client buildClient(String endpoint, String region, String accessKey, String secretKey,
+                                        boolean pathStyleAccess) {
+        S3ClientBuilder builder = S3Client.builder()
+                .httpClientBuilder(UrlConnectionHttpClient.builder())
+                .region(Region.of(region))
+                .forcePathStyle(pathStyleAccess)
+                .credentialsProvider(accessKey.isEmpty()
+                        ? DefaultCredentialsProvider.create()
+                        : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)));
+        if (!endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public OutputStream openWrite(String key) {
+        return new MultipartOutputStream(objectKey(key));
+    }
+
+    @Override
+    public InputStream openRead(String key) {
+        // No HEAD first: a missing key is reported by the GET, on the first read
+        return new RangedInputStream(key);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        try {
+            return client.headObject(request -> request.bucket(bucket).key(objectKey(key))).contentLength();
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(key);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                throw new NoSuchFileException(key);
+            }
+            throw new IOException("Failed to stat " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try {
+            size(key);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            client.deleteObject(request -> request.bucket(bucket).key(objectKey(key)));
+        } catch (S3Exception e) {
+            throw new IOException("Failed to delete " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        client.close();
+    }
+
+    private String objectKey(String key) {
+        return prefix + key;
+    }
+
+    /**
+     * Sends small objects with a single PUT and larger ones as a multipart upload. Parts are sent
+     * straight from one buffer, which grows to the part size and is then reused for every part. A
+     * failed upload is aborted so no parts are left behind.
+     */
+    private class MultipartOutputStream extends OutputStream {
+        private final String objectKey;
+        private byte[] part = new byte[8192];
+        private int length;
+        private final List<CompletedPart> parts = new ArrayList<>();
+        private String uploadId;
+        private boolean closed;
+
+        MultipartOutputStream(String objectKey) {
+            this.objectKey = objectKey;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int count = Math.min(len, partSize - length);
+                if (length + count > part.length) {
+                    part = Arrays.copyOf(part, Math.min(partSize, Math.max(length + count, part.length * 2)));
+                }
+                System.arraycopy(b, off, part, length, count);
+                length += count;
+                off += count;
+                len -= count;
+                if (length == partSize) {
+                    uploadPart();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (uploadId == null) {
+                    client.putObject(request -> request.bucket(bucket).key(objectKey), body());
+                    return;
+                }
+                if (length > 0) {
+                    uploadPart();
+                }
+                client.completeMultipartUpload(request -> request.bucket(bucket).key(objectKey).uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build()));
+            } catch (S3Exception e) {
+                abort();
+                throw new IOException("Failed to store " + objectKey + ": " + e.getMessage(), e);
+            }
+        }
+
+        private void uploadPart() throws IOException {
+            try {
+                if (uploadId == null) {
+                    uploadId = client.createMultipartUpload(request -> request.bucket(bucket).key(objectKey)).uploadId();
+                }
+                int partNumber = parts.size() + 1;
+                String eTag = client.uploadPart(request -> request.bucket(bucket).key(objectKey)
+                                .uploadId(uploadId).partNumber(partNumber),
+                        body()).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+                length = 0;
+            } catch (S3Exception e) {
+                abort();
+                throw new IOException("Failed to store " + objectKey + ": " + e.getMessage(), e);
+            }
+        }
+
+        // Reads the buffer in place; the request completes before the buffer is written again
+        private RequestBody body() {
+            byte[] bytes = part;
+            int size = length;
+            return RequestBody.fromContentProvider(() -> new ByteArrayInputStream(bytes, 0, size), size,
+                    "application/octet-stream");
+        }
+
+        private void abort() {
+            if (uploadId != null) {
+                try {
+                    client.abortMultipartUpload(request -> request.bucket(bucket).key(objectKey).uploadId(uploadId));
+                } catch (S3Exception ignored) {
+                    // The bucket's lifecycle rules clean up whatever is left
+                }
+            }
+        }
+    }
+
+    // Defers the GET until the first read so that a leading skip becomes a Range request
+    private class RangedInputStream extends InputStream {
+        private final String key;
+        private long start;
+        private InputStream body;
+
+        RangedInputStream(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return body().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return body().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (body == null && n > 0) {
+                start += n;
+                return n;
+            }
+            return body().skip(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body != null) {
+                body.close();
+            }
+        }
+
+        private InputStream body() throws IOException {
+            if (body == null) {
+                try {
+                    body = client.getObject(request -> request.bucket(bucket).key(objectKey(key))
+                            .range(start > 0 ? "bytes=" + start + "-" : null));
+                } catch (NoSuchKeyException e) {
+                    throw new NoSuchFileException(key);
+                } catch (S3Exception e) {
+                    if (e.statusCode() == 404) {
+                        throw new NoSuchFileException(key);
+                    }
+                    throw new IOException("Failed to read " + key + ": " + e.getMessage(), e);
+                }
+            }
+            return body;
+        }
+    }
+}
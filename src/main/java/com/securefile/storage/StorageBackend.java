@@ -0,0 +1,32 @@
+package com.securefile.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Where encrypted file content lives. Objects are addressed by an opaque storage key chosen by
+ * the caller and are written once; the backend is selected with {@code storage.backend}.
+ */
+public interface StorageBackend {
+
+    /**
+     * Opens a stream that stores an object under {@code key}. The object only becomes readable
+     * once the stream is closed; a caller that fails part way through should {@link #delete} it.
+     */
+    OutputStream openWrite(String key) throws IOException;
+
+    /**
+     * Opens an object for reading. Skipping before the first read is cheap on every backend, so
+     * ranged reads do not fetch the bytes in front of the range. A missing object may not be
+     * reported until the first read, as a {@link java.nio.file.NoSuchFileException}.
+     */
+    InputStream openRead(String key) throws IOException;
+
+    long size(String key) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    // Deleting a key that does not exist is not an error
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,172 @@
+package com.securefile.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.securefile.model.File;
+import com.securefile.model.Role;
+import com.securefile.model.User;
+import com.securefile.repository.FileRepository;
+import com.securefile.repository.UploadSessionRepository;
+import com.securefile.repository.UserRepository;
+import com.securefile.security.CustomUserDetailsService;
+import com.securefile.security.JwtService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Drives the resumable-upload API through the real JWT filter, so handlers see the principal the
+ * security context actually holds.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UploadControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private User owner;
+    private String ownerToken;
+    private String otherToken;
+
+    @BeforeEach
+    void createUsers() {
+        owner = createUser();
+        ownerToken = token(owner);
+        otherToken = token(createUser());
+    }
+
+    @Test
+    void uploadsChunksAndCommitsForTheAuthenticatedUser() throws Exception {
+        byte[] content = "resumable upload content".getBytes(StandardCharsets.UTF_8);
+        String sessionId = createSession(content.length);
+
+        assertThat(uploadSessionRepository.findById(sessionId))
+                .hasValueSatisfying(session -> assertThat(session.getUser().getId()).isEqualTo(owner.getId()));
+
+        mockMvc.perform(put("/api/uploads/{id}/chunks/0", sessionId)
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken)
+                        .content(content))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/uploads/{id}", sessionId)
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.receivedChunks", contains(0)));
+
+        String body = mockMvc.perform(post("/api/uploads/{id}/commit", sessionId)
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Number fileId = JsonPath.read(body, "$.id");
+        File file = fileRepository.findById(fileId.longValue()).orElseThrow();
+        assertThat(file.getUser().getId()).isEqualTo(owner.getId());
+        assertThat(file.getFileSize()).isEqualTo(content.length);
+    }
+
+    @Test
+    void refusesToResendAChunk() throws Exception {
+        String sessionId = createSession(4);
+
+        mockMvc.perform(put("/api/uploads/{id}/chunks/0", sessionId)
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken)
+                        .content(new byte[] {1, 2, 3, 4}))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put("/api/uploads/{id}/chunks/0", sessionId)
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken)
+                        .content(new byte[] {5, 6, 7, 8}))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", containsString("already sent")));
+
+        mockMvc.perform(delete("/api/uploads/{id}", sessionId)
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void hidesSessionsFromOtherUsers() throws Exception {
+        String sessionId = createSession(4);
+
+        mockMvc.perform(get("/api/uploads/{id}", sessionId)
+                        .header(HttpHeaders.AUTHORIZATION, otherToken))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", containsString("Unauthorized")));
+
+        mockMvc.perform(put("/api/uploads/{id}/chunks/0", sessionId)
+                        .header(HttpHeaders.AUTHORIZATION, otherToken)
+                        .content(new byte[] {1, 2, 3, 4}))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void rejectsRequestsWithoutAToken() throws Exception {
+        mockMvc.perform(post("/api/uploads")
+                        .param("fileName", "notes.txt")
+                        .param("totalSize", "4"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private String createSession(long totalSize) throws Exception {
+        String body = mockMvc.perform(post("/api/uploads")
+                        .header(HttpHeaders.AUTHORIZATION, ownerToken)
+                        .param("fileName", "notes.txt")
+                        .param("contentType", "text/plain")
+                        .param("totalSize", String.valueOf(totalSize)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$.sessionId");
+    }
+
+    private User createUser() {
+        String name = "user-" + UUID.randomUUID();
+        User user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword(passwordEncoder.encode("password"));
+        user.setFirstName("Test");
+        user.setLastName("User");
+        user.setRole(Role.ROLE_USER);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        return userRepository.save(user);
+    }
+
+    private String token(User user) {
+        return "Bearer " + jwtService.generateToken(userDetailsService.loadUserByUsername(user.getUsername()));
+    }
+}
@@ -0,0 +1,98 @@
+package com.securefile.service;
+
+import com.securefile.model.File;
+import com.securefile.model.FileBlob;
+import com.securefile.model.Role;
+import com.securefile.model.User;
+import com.securefile.repository.FileBlobRepository;
+import com.securefile.repository.UserRepository;
+import com.securefile.storage.InMemoryStorageBackend;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class FileServiceTest {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private FileBlobRepository fileBlobRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private InMemoryStorageBackend storageBackend;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String name = "user-" + UUID.randomUUID();
+        user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("unused");
+        user.setFirstName("Test");
+        user.setLastName("User");
+        user.setRole(Role.ROLE_USER);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        user = userRepository.save(user);
+    }
+
+    @Test
+    void storesDuplicateContentOnce() throws Exception {
+        byte[] content = UUID.randomUUID().toString().getBytes();
+        int objectsBefore = storageBackend.objectCount();
+
+        File first = fileService.uploadFile(upload("a.bin", content), user);
+        File second = fileService.uploadFile(upload("b.bin", content), user);
+
+        assertThat(second.getStorageKey()).isEqualTo(first.getStorageKey());
+        assertThat(storageBackend.objectCount()).isEqualTo(objectsBefore + 1);
+        FileBlob blob = fileBlobRepository.findByContentHash(first.getContentHash()).orElseThrow();
+        assertThat(blob.getReferenceCount()).isEqualTo(2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fileService.downloadFile(second, out);
+        assertThat(out.toByteArray()).isEqualTo(content);
+    }
+
+    @Test
+    void leavesNoReferenceOrObjectWhenTheRowCannotBeSaved() throws Exception {
+        byte[] content = UUID.randomUUID().toString().getBytes();
+        File existing = fileService.uploadFile(upload("a.bin", content), user);
+        int objectsBefore = storageBackend.objectCount();
+        long blobsBefore = fileBlobRepository.count();
+
+        // Never persisted, so the insert fails when the transaction flushes
+        User unsaved = new User();
+        unsaved.setUsername("unsaved");
+        assertThatThrownBy(() -> fileService.uploadFile(upload("b.bin", content), unsaved))
+                .isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> fileService.uploadFile(upload("c.bin", UUID.randomUUID().toString().getBytes()),
+                unsaved))
+                .isInstanceOf(RuntimeException.class);
+
+        assertThat(fileBlobRepository.findByContentHash(existing.getContentHash()).orElseThrow().getReferenceCount())
+                .isEqualTo(1);
+        assertThat(fileBlobRepository.count()).isEqualTo(blobsBefore);
+        assertThat(storageBackend.objectCount()).isEqualTo(objectsBefore);
+    }
+
+    private static MockMultipartFile upload(String name, byte[] content) {
+        return new MockMultipartFile("file", name, "application/octet-stream", content);
+    }
+}
@@ -0,0 +1,123 @@
+package com.securefile.service;
+
+import com.securefile.model.Folder;
+import com.securefile.model.Role;
+import com.securefile.model.User;
+import com.securefile.repository.FolderRepository;
+import com.securefile.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+class FolderServiceTest {
+
+    @Autowired
+    private FolderService folderService;
+
+    @Autowired
+    private FolderRepository folderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void createUser() {
+        String name = "user-" + UUID.randomUUID();
+        user = new User();
+        user.setUsername(name);
+        user.setEmail(name + "@example.com");
+        user.setPassword("unused");
+        user.setFirstName("Test");
+        user.setLastName("User");
+        user.setRole(Role.ROLE_USER);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        user = userRepository.save(user);
+    }
+
+    @Test
+    void movesASubtreeAndRewritesItsPaths() {
+        Folder a = folderService.createFolder("a", user, null);
+        Folder b = folderService.createFolder("b", user, null);
+        Folder child = folderService.createFolder("child", user, a);
+
+        folderService.moveFolder(a, b);
+
+        Folder movedChild = folderRepository.findById(child.getId()).orElseThrow();
+        assertThat(movedChild.getPath()).isEqualTo("/" + b.getId() + "/" + a.getId() + "/" + child.getId() + "/");
+        assertThat(movedChild.getDepth()).isEqualTo(2);
+    }
+
+    @Test
+    void refusesToMoveAFolderBelowItself() {
+        Folder a = folderService.createFolder("a", user, null);
+        Folder child = folderService.createFolder("child", user, a);
+
+        assertThatThrownBy(() -> folderService.moveFolder(a, child))
+                .hasMessageContaining("Cannot move a folder into itself");
+    }
+
+    @Test
+    void checksAgainstCurrentPathsNotTheCallersCopy() {
+        Folder a = folderService.createFolder("a", user, null);
+        Folder b = folderService.createFolder("b", user, null);
+        Folder staleA = folderRepository.findById(a.getId()).orElseThrow();
+        Folder staleB = folderRepository.findById(b.getId()).orElseThrow();
+
+        folderService.moveFolder(staleB, staleA);
+
+        assertThatThrownBy(() -> folderService.moveFolder(staleA, staleB))
+                .hasMessageContaining("Cannot move a folder into itself");
+    }
+
+    @Test
+    void crossingMovesNeverBothSucceed() throws Exception {
+        for (int round = 0; round < 10; round++) {
+            // a/d and b/c; moving a under c and b under d at once would make a cycle
+            Folder a = folderService.createFolder("a", user, null);
+            Folder b = folderService.createFolder("b", user, null);
+            Folder c = folderService.createFolder("c", user, b);
+            Folder d = folderService.createFolder("d", user, a);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<CompletableFuture<Boolean>> moves = new ArrayList<>();
+            moves.add(CompletableFuture.supplyAsync(() -> move(start, a, c)));
+            moves.add(CompletableFuture.supplyAsync(() -> move(start, b, d)));
+            start.countDown();
+
+            long succeeded = moves.stream().filter(CompletableFuture::join).count();
+            assertThat(succeeded).isEqualTo(1);
+            for (Folder folder : List.of(a, b, c, d)) {
+                Folder current = folderRepository.findById(folder.getId()).orElseThrow();
+                assertThat(current.getPath().split("/")).doesNotHaveDuplicates();
+            }
+        }
+    }
+
+    private boolean move(CountDownLatch start, Folder folder, Folder newParent) {
+        try {
+            start.await();
+            folderService.moveFolder(folder, newParent);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
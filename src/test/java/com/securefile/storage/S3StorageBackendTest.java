@@ -0,0 +1,98 @@
+package com.securefile.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class S3StorageBackendTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    private InMemoryS3Client client;
+    private S3StorageBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        client = new InMemoryS3Client();
+        backend = new S3StorageBackend(client, "bucket", "files/", PART_SIZE);
+    }
+
+    @Test
+    void writesSmallObjectsWithOnePut() throws Exception {
+        byte[] content = randomBytes(1000);
+        try (OutputStream out = backend.openWrite("small")) {
+            out.write(content);
+        }
+
+        assertThat(client.calls).containsExactly("PutObject");
+        assertThat(client.objects.get("files/small")).isEqualTo(content);
+    }
+
+    @Test
+    void splitsLargeObjectsIntoParts() throws Exception {
+        byte[] content = randomBytes(PART_SIZE * 2 + 12345);
+        try (OutputStream out = backend.openWrite("large")) {
+            // Writes that straddle the part boundaries
+            for (int off = 0; off < content.length; off += 1_000_003) {
+                out.write(content, off, Math.min(1_000_003, content.length - off));
+            }
+        }
+
+        assertThat(client.calls).containsExactly("CreateMultipartUpload", "UploadPart", "UploadPart", "UploadPart",
+                "CompleteMultipartUpload");
+        assertThat(client.objects.get("files/large")).isEqualTo(content);
+        assertThat(client.uploads).isEmpty();
+    }
+
+    @Test
+    void readsARangeWithOneGet() throws Exception {
+        byte[] content = randomBytes(4096);
+        client.objects.put("files/ranged", content);
+
+        try (InputStream in = backend.openRead("ranged")) {
+            assertThat(in.skip(1000)).isEqualTo(1000);
+            assertThat(in.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 1000, content.length));
+        }
+
+        assertThat(client.calls).containsExactly("GetObject");
+        assertThat(client.ranges).containsExactly("bytes=1000-");
+    }
+
+    @Test
+    void readsWholeObjectsWithoutARange() throws Exception {
+        byte[] content = randomBytes(4096);
+        client.objects.put("files/whole", content);
+
+        try (InputStream in = backend.openRead("whole")) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+
+        assertThat(client.ranges).isEqualTo(Collections.singletonList(null));
+    }
+
+    @Test
+    void reportsAMissingKeyFromTheGet() throws Exception {
+        try (InputStream in = backend.openRead("missing")) {
+            assertThatThrownBy(in::read).isInstanceOf(NoSuchFileException.class).hasMessage("missing");
+        }
+        assertThat(client.calls).containsExactly("GetObject");
+
+        assertThatThrownBy(() -> backend.size("missing")).isInstanceOf(NoSuchFileException.class);
+        assertThat(backend.exists("missing")).isFalse();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return bytes;
+    }
+}